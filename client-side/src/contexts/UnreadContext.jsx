@@ -77,7 +77,14 @@ export const UnreadProvider = ({ children }) => {
       const unsubscribe = globalWebSocketService.onUnreadNotification((data) => {
 
         
-        if (data.conversationId) {
+        if (data.type === 'unread_count') {
+          // Server-pushed counters: the ride id is the conversation id
+          if (data.rideCount > 0) {
+            addUnreadConversation(data.rideId);
+          } else {
+            markConversationAsRead(data.rideId);
+          }
+        } else if (data.conversationId) {
           addUnreadConversation(data.conversationId);
         } else if (data.rideId) {
           // If we don't have conversation ID but have rideId, 
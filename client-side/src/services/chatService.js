@@ -62,12 +62,14 @@ class ChatService {
         }
 
 
+        // Chat messages are delivered to participants only; keep the ones for this ride
         const subscription = this.stompClient.subscribe(
-            `/topic/ride.${rideId}`,
+            '/user/queue/private',
             (message) => {
                 
                 try {
                     const chatMessage = JSON.parse(message.body);
+                    if (String(chatMessage.rideId) !== String(rideId)) return;
             
                     if (onMessageReceived) onMessageReceived(chatMessage);
                 } catch (error) {
@@ -75,7 +77,7 @@ class ChatService {
                 }
             },
             (error) => {
-                console.error(`Subscription error for /topic/ride.${rideId}:`, error);
+                console.error(`Subscription error for ride ${rideId}:`, error);
             }
         );
 
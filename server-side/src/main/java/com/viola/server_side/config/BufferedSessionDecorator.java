@@ -0,0 +1,324 @@
+package com.viola.server_side.config;
+
+import com.viola.server_side.service.ClusterMessagingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking send side of one session for {@link OutboundSessionPolicy}: frames are appended to a
+ * bounded FIFO and written by at most one writer task at a time, which keeps them in order. Closing
+ * waits for queued frames (an ERROR frame before the close, for instance) unless the session is
+ * being dropped for exceeding its limits.
+ *
+ * <p>Extends Spring's decorator only because ordered publishing requires one; its blocking send
+ * path is not used. With ordered publishing the message callback fires once a frame is queued,
+ * which releases the session's next frame to this buffer instead of holding it in the channel.
+ */
+@Slf4j
+class BufferedSessionDecorator extends ConcurrentWebSocketSessionDecorator {
+
+    private static final String COALESCE_HEADER_LINE = "\n" + ClusterMessagingService.COALESCE_KEY_HEADER + ":";
+
+    private final long sendTimeLimitNanos;
+    private final int bufferSizeLimit;
+    private final int maxQueuedMessages;
+    private final OutboundSessionPolicy.OverflowPolicy overflowPolicy;
+    private final OutboundSessionPolicy policy;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock
+    private final Deque<Queued> buffer = new ArrayDeque<>();
+    private long bufferedBytes;
+    private boolean writing;
+    private CloseStatus pendingClose;
+
+    private volatile long sendStartNanos;
+    private volatile boolean closed;
+    private final AtomicBoolean disconnectPending = new AtomicBoolean();
+    private volatile Consumer<WebSocketMessage<?>> messageCallback = message -> { };
+
+    BufferedSessionDecorator(WebSocketSession delegate, int sendTimeLimit, int bufferSizeLimit, int maxQueuedMessages,
+                             OutboundSessionPolicy.OverflowPolicy overflowPolicy, OutboundSessionPolicy policy) {
+        super(delegate, sendTimeLimit, bufferSizeLimit);
+        this.sendTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeLimit);
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.maxQueuedMessages = maxQueuedMessages;
+        this.overflowPolicy = overflowPolicy;
+        this.policy = policy;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        try {
+            enqueue(message);
+        } finally {
+            messageCallback.accept(message);
+        }
+    }
+
+    @Override
+    public void setMessageCallback(Consumer<WebSocketMessage<?>> callback) {
+        this.messageCallback = callback;
+    }
+
+    @Override
+    public int getBufferSize() {
+        lock.lock();
+        try {
+            return (int) bufferedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getTimeSinceSendStarted() {
+        long started = sendStartNanos;
+        return started != 0 ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) : 0;
+    }
+
+    private void enqueue(WebSocketMessage<?> message) throws IOException {
+        if (closed) {
+            return;
+        }
+        if (isSendTimeExceeded()) {
+            policy.timeDisconnects.increment();
+            closed = true;
+            throw new SessionLimitExceededException("Send time limit exceeded for session " + getId(),
+                    CloseStatus.SESSION_NOT_RELIABLE);
+        }
+        String coalesceKey = overflowPolicy != OutboundSessionPolicy.OverflowPolicy.DISCONNECT ? coalesceKey(message) : null;
+        boolean overflow = false;
+        boolean startWriter = false;
+        lock.lock();
+        try {
+            if (pendingClose != null) {
+                return;
+            }
+            if (coalesceKey != null && overflowPolicy == OutboundSessionPolicy.OverflowPolicy.COALESCE
+                    && !buffer.isEmpty()) {
+                removeQueued(coalesceKey);
+            }
+            Queued queued = new Queued(message, coalesceKey, message.getPayloadLength());
+            buffer.addLast(queued);
+            adjustBuffered(queued.size);
+            if (overflowPolicy == OutboundSessionPolicy.OverflowPolicy.DROP_OLDEST && isOverLimit()) {
+                dropOldestCoalescable();
+            }
+            overflow = isOverLimit();
+            policy.bufferedBytes.record(bufferedBytes);
+            if (!overflow && !writing) {
+                writing = true;
+                startWriter = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (overflow) {
+            policy.bufferDisconnects.increment();
+            closed = true;
+            throw new SessionLimitExceededException("Send buffer limit exceeded for session " + getId(),
+                    CloseStatus.SESSION_NOT_RELIABLE);
+        }
+        if (startWriter) {
+            try {
+                policy.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                lock.lock();
+                try {
+                    writing = false;
+                } finally {
+                    lock.unlock();
+                }
+                policy.rejectedDisconnects.increment();
+                closed = true;
+                throw new SessionLimitExceededException("No writer available for session " + getId(),
+                        CloseStatus.SESSION_NOT_RELIABLE);
+            }
+        }
+    }
+
+    @Override
+    public void close(CloseStatus status) throws IOException {
+        lock.lock();
+        try {
+            if (writing && !closed) {
+                // The writer closes the session once the queued frames are out
+                pendingClose = status;
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        closeNow(status);
+    }
+
+    boolean isSendTimeExceeded() {
+        long started = sendStartNanos;
+        return started != 0 && System.nanoTime() - started > sendTimeLimitNanos;
+    }
+
+    /** True when the session is stalled and no close is pending yet; the caller must then run {@link #disconnectStalled}. */
+    boolean claimStalledDisconnect() {
+        return !closed && isSendTimeExceeded() && disconnectPending.compareAndSet(false, true);
+    }
+
+    void disconnectStalled() {
+        try {
+            if (closed || !isSendTimeExceeded()) {
+                return;
+            }
+            policy.timeDisconnects.increment();
+            log.warn("Closing session {}: send blocked longer than the time limit", getId());
+            closeQuietly(CloseStatus.SESSION_NOT_RELIABLE);
+        } finally {
+            disconnectPending.set(false);
+        }
+    }
+
+    /** Drops queued frames once the session is gone. */
+    void discard() {
+        closed = true;
+        lock.lock();
+        try {
+            clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Queued next;
+            CloseStatus closeAfter = null;
+            lock.lock();
+            try {
+                next = closed ? null : buffer.pollFirst();
+                if (next == null) {
+                    writing = false;
+                    closeAfter = pendingClose;
+                } else {
+                    adjustBuffered(-next.size);
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (next == null) {
+                if (closeAfter != null) {
+                    closeQuietly(closeAfter);
+                }
+                return;
+            }
+            sendStartNanos = System.nanoTime();
+            try {
+                getDelegate().sendMessage(next.message);
+            } catch (IOException | RuntimeException e) {
+                log.debug("Failed to send to session {}: {}", getId(), e.getMessage());
+                closeQuietly(CloseStatus.SESSION_NOT_RELIABLE);
+                return;
+            } finally {
+                sendStartNanos = 0;
+            }
+        }
+    }
+
+    private void closeNow(CloseStatus status) throws IOException {
+        discard();
+        getDelegate().close(status);
+    }
+
+    private void closeQuietly(CloseStatus status) {
+        try {
+            closeNow(status);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Failed to close session {}: {}", getId(), e.getMessage());
+        }
+    }
+
+    private boolean isOverLimit() {
+        return bufferedBytes > bufferSizeLimit || buffer.size() > maxQueuedMessages;
+    }
+
+    /** Discards the oldest queued frames that a later frame supersedes, never the newest frame. */
+    private void dropOldestCoalescable() {
+        Iterator<Queued> iterator = buffer.iterator();
+        for (int remaining = buffer.size() - 1; remaining > 0 && isOverLimit(); remaining--) {
+            Queued queued = iterator.next();
+            if (queued.coalesceKey != null) {
+                iterator.remove();
+                adjustBuffered(-queued.size);
+                policy.dropped.increment();
+            }
+        }
+    }
+
+    private void removeQueued(String coalesceKey) {
+        Iterator<Queued> iterator = buffer.iterator();
+        while (iterator.hasNext()) {
+            Queued queued = iterator.next();
+            if (coalesceKey.equals(queued.coalesceKey)) {
+                iterator.remove();
+                adjustBuffered(-queued.size);
+                policy.coalesced.increment();
+            }
+        }
+    }
+
+    private void clear() {
+        adjustBuffered(-bufferedBytes);
+        buffer.clear();
+    }
+
+    private void adjustBuffered(long delta) {
+        bufferedBytes += delta;
+        policy.addBufferedBytes(delta);
+    }
+
+    /** Value of the frame's coalesce-key header, read from the encoded STOMP header block. */
+    static String coalesceKey(WebSocketMessage<?> message) {
+        String frame;
+        if (message instanceof TextMessage text) {
+            frame = text.getPayload();
+        } else if (message instanceof BinaryMessage binary) {
+            ByteBuffer payload = binary.getPayload().duplicate();
+            byte[] head = new byte[Math.min(payload.remaining(), 1024)];
+            payload.get(head);
+            frame = new String(head, StandardCharsets.ISO_8859_1);
+        } else {
+            return null;
+        }
+        int headersEnd = frame.indexOf("\n\n");
+        int start = frame.indexOf(COALESCE_HEADER_LINE);
+        if (start < 0 || (headersEnd >= 0 && start > headersEnd)) {
+            return null;
+        }
+        start += COALESCE_HEADER_LINE.length();
+        int end = frame.indexOf('\n', start);
+        return end > start ? frame.substring(start, end) : null;
+    }
+
+    private record Queued(WebSocketMessage<?> message, String coalesceKey, int size) {
+        Queued {
+            Objects.requireNonNull(message);
+        }
+    }
+}
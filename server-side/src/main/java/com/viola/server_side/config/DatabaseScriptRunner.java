@@ -0,0 +1,81 @@
+package com.viola.server_side.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.jdbc.init.DataSourceScriptDatabaseInitializer;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.List;
+
+/**
+ * Applies the idempotent PostgreSQL scripts under {@code db/} that Hibernate's
+ * {@code ddl-auto=update} cannot express (extensions, GIN indexes, sequence moves, backfills).
+ * Registered as a Boot database initializer, so with {@code spring.jpa.defer-datasource-initialization}
+ * it runs once Hibernate has updated the schema and before the web server, schedulers and
+ * application runners start; no request can allocate an id or write a summary row first. A failing
+ * script fails startup. Each script runs as a single statement, so a backfill commits all or nothing.
+ * Other databases (the H2 test slices) are skipped.
+ */
+@Slf4j
+@Component
+public class DatabaseScriptRunner extends DataSourceScriptDatabaseInitializer {
+
+    private static final List<String> SCRIPTS = List.of(
+        "classpath:db/rides-search-indexes.sql",
+        "classpath:db/rides-departure-backfill.sql",
+        "classpath:db/pooled-id-sequences.sql",
+        "classpath:db/conversation-summary-backfill.sql",
+        "classpath:db/read-watermarks-backfill.sql",
+        "classpath:db/ride-version-sequence.sql"
+    );
+
+    private final DataSource dataSource;
+    private final boolean deferred;
+
+    public DatabaseScriptRunner(DataSource dataSource,
+                                @Value("${spring.jpa.defer-datasource-initialization:false}") boolean deferred) {
+        super(dataSource, settings());
+        this.dataSource = dataSource;
+        this.deferred = deferred;
+    }
+
+    @Override
+    public boolean initializeDatabase() {
+        if (!isPostgres()) {
+            log.debug("Skipping PostgreSQL scripts on a non-PostgreSQL database");
+            return false;
+        }
+        if (!deferred) {
+            // Undeferred, the scripts would run before Hibernate creates the tables they migrate
+            throw new IllegalStateException("spring.jpa.defer-datasource-initialization must be true");
+        }
+        boolean applied = super.initializeDatabase();
+        log.info("Applied database scripts {}", SCRIPTS);
+        return applied;
+    }
+
+    private boolean isPostgres() {
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            return "PostgreSQL".equals(product);
+        } catch (MetaDataAccessException e) {
+            throw new IllegalStateException("Could not determine the database product", e);
+        }
+    }
+
+    private static DatabaseInitializationSettings settings() {
+        DatabaseInitializationSettings settings = new DatabaseInitializationSettings();
+        settings.setSchemaLocations(SCRIPTS);
+        settings.setMode(DatabaseInitializationMode.ALWAYS);
+        settings.setContinueOnError(false);
+        settings.setSeparator(ScriptUtils.EOF_STATEMENT_SEPARATOR);
+        return settings;
+    }
+}
@@ -0,0 +1,24 @@
+package com.viola.server_side.config;
+
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Execution model. The build targets Java 17, so Tomcat requests, the STOMP client channels (sized
+ * in {@link WebSocketConfig}) and the chat writer all run on platform threads. Setting
+ * {@code spring.threads.virtual.enabled=true} on a JVM without virtual threads fails startup rather
+ * than being silently ignored; on Java 21+ it only moves what Boot configures itself (Tomcat and the
+ * application task executor), not the channel pools.
+ */
+@Configuration
+public class ExecutionConfig {
+
+    public ExecutionConfig(Environment environment) {
+        boolean requested = environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false);
+        if (requested && !Threading.VIRTUAL.isActive(environment)) {
+            throw new IllegalStateException("spring.threads.virtual.enabled=true needs Java 21+, but this is Java "
+                    + Runtime.version().feature());
+        }
+    }
+}
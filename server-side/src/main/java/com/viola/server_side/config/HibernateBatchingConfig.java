@@ -0,0 +1,25 @@
+package com.viola.server_side.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+/**
+ * Enables JDBC batching and ordered inserts/updates unless the properties file already sets them.
+ * Batching only takes effect because entity ids come from pooled sequences rather than IDENTITY.
+ */
+@Configuration
+public class HibernateBatchingConfig implements HibernatePropertiesCustomizer {
+
+    @Value("${app.jpa.batch-size:50}")
+    private int batchSize;
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.putIfAbsent("hibernate.jdbc.batch_size", batchSize);
+        hibernateProperties.putIfAbsent("hibernate.order_inserts", true);
+        hibernateProperties.putIfAbsent("hibernate.order_updates", true);
+    }
+}
@@ -0,0 +1,130 @@
+package com.viola.server_side.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Slow-consumer handling for STOMP sessions. Every session's outbound frames go through a
+ * {@link BufferedSessionDecorator}: senders only append to the session's bounded buffer, and a
+ * writer thread drains it, so a session stuck on a slow network holds one writer, not the
+ * outbound channel. When a buffer exceeds the send-buffer size limit or {@code max-queued-messages},
+ * the overflow policy applies:
+ * <ul>
+ *   <li>{@code COALESCE}: frames with a {@code coalesce-key} header replace queued frames with the
+ *       same key; if the buffer still overflows, the session is disconnected</li>
+ *   <li>{@code DROP_OLDEST}: the oldest queued frames with a {@code coalesce-key} header (state that
+ *       a later frame repeats, such as unread counts) are discarded; chat messages, receipts and
+ *       errors are never dropped, so if that is not enough the session is disconnected</li>
+ *   <li>{@code DISCONNECT}: the session is closed, as Spring's default decorator does</li>
+ * </ul>
+ * A write blocked past the send time limit disconnects the session under every policy; a periodic
+ * sweep catches sessions that receive nothing further. Those closes run on their own small pool,
+ * since a close can block behind the stalled write, and a session has at most one close pending.
+ * The writer pool queues at most {@code writer-queue-capacity} drains; a session whose
+ * drain is rejected is disconnected rather than written from the sender's thread.
+ */
+@Slf4j
+@Component
+public class OutboundSessionPolicy implements DisposableBean {
+
+    public enum OverflowPolicy { COALESCE, DROP_OLDEST, DISCONNECT }
+
+    private final OverflowPolicy overflowPolicy;
+    private final int maxQueuedMessages;
+    private final ThreadPoolTaskExecutor writer;
+    private final ThreadPoolTaskExecutor disconnector;
+    private final Map<String, BufferedSessionDecorator> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong totalBufferedBytes = new AtomicLong();
+
+    final DistributionSummary bufferedBytes;
+    final Counter coalesced;
+    final Counter dropped;
+    final Counter bufferDisconnects;
+    final Counter timeDisconnects;
+    final Counter rejectedDisconnects;
+
+    public OutboundSessionPolicy(@Value("${app.websocket.outbound.overflow-policy:DISCONNECT}") OverflowPolicy overflowPolicy,
+                                 @Value("${app.websocket.outbound.max-queued-messages:1000}") int maxQueuedMessages,
+                                 @Value("${app.websocket.outbound.writer-threads:0}") int writerThreads,
+                                 @Value("${app.websocket.outbound.writer-queue-capacity:10000}") int writerQueueCapacity,
+                                 MeterRegistry meterRegistry) {
+        this.overflowPolicy = overflowPolicy;
+        this.maxQueuedMessages = maxQueuedMessages;
+        int threads = writerThreads > 0 ? writerThreads : 4 * Runtime.getRuntime().availableProcessors();
+        this.writer = executor("ws-writer-", threads, writerQueueCapacity);
+        // One pending close per session bounds this queue by the session count
+        this.disconnector = executor("ws-disconnect-", 2, Integer.MAX_VALUE);
+        this.bufferedBytes = DistributionSummary.builder("viola.websocket.outbound.buffered.bytes")
+                .description("Bytes queued for a session, sampled on each send")
+                .baseUnit("bytes").publishPercentiles(0.5, 0.99).register(meterRegistry);
+        this.coalesced = Counter.builder("viola.websocket.outbound.discarded").tag("reason", "coalesced").register(meterRegistry);
+        this.dropped = Counter.builder("viola.websocket.outbound.discarded").tag("reason", "overflow").register(meterRegistry);
+        this.bufferDisconnects = Counter.builder("viola.websocket.outbound.disconnects").tag("reason", "buffer").register(meterRegistry);
+        this.timeDisconnects = Counter.builder("viola.websocket.outbound.disconnects").tag("reason", "time").register(meterRegistry);
+        this.rejectedDisconnects = Counter.builder("viola.websocket.outbound.disconnects").tag("reason", "writers").register(meterRegistry);
+        Gauge.builder("viola.websocket.outbound.buffered.total", totalBufferedBytes, AtomicLong::get)
+                .baseUnit("bytes").register(meterRegistry);
+    }
+
+    public WebSocketSession decorate(WebSocketSession session, int sendTimeLimit, int sendBufferSizeLimit) {
+        BufferedSessionDecorator decorated = new BufferedSessionDecorator(
+                session, sendTimeLimit, sendBufferSizeLimit, maxQueuedMessages, overflowPolicy, this);
+        sessions.put(session.getId(), decorated);
+        return decorated;
+    }
+
+    public void release(String sessionId) {
+        BufferedSessionDecorator removed = sessions.remove(sessionId);
+        if (removed != null) {
+            removed.discard();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.websocket.outbound.sweep-interval-ms:1000}")
+    public void disconnectStalledSessions() {
+        for (BufferedSessionDecorator session : sessions.values()) {
+            if (session.claimStalledDisconnect()) {
+                // Closing can block behind the stalled write, so keep it off the scheduler and writer threads
+                disconnector.execute(session::disconnectStalled);
+            }
+        }
+    }
+
+    /** Runs a session's drain; throws {@link java.util.concurrent.RejectedExecutionException} when the writers are saturated. */
+    void execute(Runnable task) {
+        writer.execute(task);
+    }
+
+    void addBufferedBytes(long delta) {
+        totalBufferedBytes.addAndGet(delta);
+    }
+
+    @Override
+    public void destroy() {
+        writer.shutdown();
+        disconnector.shutdown();
+    }
+
+    private static ThreadPoolTaskExecutor executor(String threadNamePrefix, int threads, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,160 @@
+package com.viola.server_side.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.viola.server_side.service.StompSessionRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.sockjs.transport.session.AbstractSockJsSession;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Per-connection payload codec. A client that sends {@code payload-codec:cbor} on CONNECT receives
+ * MESSAGE bodies as CBOR ({@code content-type:application/cbor}) and may send CBOR SEND frames;
+ * everyone else keeps JSON. Payloads are still serialized once as JSON and transcoded here, on the
+ * way out to each CBOR session. The broker hands every subscriber the same payload array, so the
+ * last transcoding is reused across a fan-out.
+ *
+ * <p>Spring's STOMP handler sends only {@code application/octet-stream} frames as binary WebSocket
+ * messages, so {@link #binaryFrames} resends CBOR frames as binary; SockJS cannot carry binary
+ * frames, so SockJS sessions stay on JSON whatever they ask for.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PayloadCodecInterceptor implements ChannelInterceptor {
+
+    public static final String CODEC_HEADER = "payload-codec";
+    public static final MimeType CBOR = new MimeType("application", "cbor");
+
+    private static final String BINARY_FRAMES_ATTRIBUTE = PayloadCodecInterceptor.class.getName() + ".binaryFrames";
+    private static final String CBOR_CONTENT_TYPE_LINE = "\ncontent-type:" + CBOR + "\n";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final CBORFactory CBOR_FACTORY = new CBORFactory();
+
+    private final StompSessionRegistry sessionRegistry;
+    private final AtomicReference<Transcoded> lastTranscoded = new AtomicReference<>();
+
+    /**
+     * Payload type for a CONNECT frame's {@code payload-codec} header on a session with the given
+     * attributes; null means JSON.
+     */
+    public static MimeType negotiate(String codec, Map<String, Object> sessionAttributes) {
+        boolean binaryFrames = sessionAttributes != null && Boolean.TRUE.equals(sessionAttributes.get(BINARY_FRAMES_ATTRIBUTE));
+        return binaryFrames && "cbor".equalsIgnoreCase(codec) ? CBOR : null;
+    }
+
+    /** Handler decorator that sends CBOR frames of plain WebSocket sessions as binary messages. */
+    public static WebSocketHandler binaryFrames(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                if (session instanceof AbstractSockJsSession) {
+                    super.afterConnectionEstablished(session);
+                    return;
+                }
+                session.getAttributes().put(BINARY_FRAMES_ATTRIBUTE, Boolean.TRUE);
+                super.afterConnectionEstablished(new BinaryFrameSession(session));
+            }
+        };
+    }
+
+    /** Mapper for decoding CBOR SEND frames, with the same date handling as the JSON path. */
+    public static CBORMapper cborMapper() {
+        CBORMapper mapper = new CBORMapper();
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return mapper;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, SimpMessageHeaderAccessor.class);
+        if (accessor == null || accessor.getMessageType() != SimpMessageType.MESSAGE
+                || !(message.getPayload() instanceof byte[] json)) {
+            return message;
+        }
+        MimeType contentType = accessor.getContentType();
+        if (contentType == null || !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(contentType)
+                || !CBOR.equals(sessionRegistry.payloadTypeOf(accessor.getSessionId()))) {
+            return message;
+        }
+        try {
+            SimpMessageHeaderAccessor headers = (SimpMessageHeaderAccessor) MessageHeaderAccessor.getMutableAccessor(message);
+            headers.setContentType(CBOR);
+            return MessageBuilder.createMessage(transcode(json), headers.getMessageHeaders());
+        } catch (IOException e) {
+            log.warn("Could not transcode payload to CBOR for session {}: {}", accessor.getSessionId(), e.getMessage());
+            return message;
+        }
+    }
+
+    private byte[] transcode(byte[] json) throws IOException {
+        Transcoded last = lastTranscoded.get();
+        if (last != null && last.json == json) {
+            return last.cbor;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (JsonParser parser = JSON_FACTORY.createParser(json);
+             JsonGenerator generator = CBOR_FACTORY.createGenerator(out)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        }
+        byte[] cbor = out.toByteArray();
+        lastTranscoded.set(new Transcoded(json, cbor));
+        return cbor;
+    }
+
+    private record Transcoded(byte[] json, byte[] cbor) {
+    }
+
+    private static class BinaryFrameSession extends WebSocketSessionDecorator {
+
+        BinaryFrameSession(WebSocketSession session) {
+            super(session);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            if (message instanceof TextMessage text && isCborFrame(text.getPayload())) {
+                // The STOMP encoder's bytes are kept by the TextMessage; its string form is not valid UTF-8
+                super.sendMessage(new BinaryMessage(text.asBytes(), text.isLast()));
+            } else {
+                super.sendMessage(message);
+            }
+        }
+
+        private static boolean isCborFrame(String frame) {
+            int headersEnd = frame.indexOf("\n\n");
+            int contentType = frame.indexOf(CBOR_CONTENT_TYPE_LINE);
+            return contentType >= 0 && contentType < headersEnd;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.viola.server_side.config;
 
 import com.viola.server_side.security.JwtUtil;
+import com.viola.server_side.service.ChatParticipantCache;
+import com.viola.server_side.service.StompSessionRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.Message;
@@ -15,6 +17,8 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 
+import java.security.Principal;
+
 @Slf4j
 @Component
 @RequiredArgsConstructor
@@ -22,12 +26,27 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
     
     private final JwtUtil jwtUtil;
     private final UserDetailsService userDetailsService;
+    private final StompSessionRegistry sessionRegistry;
+    private final ChatParticipantCache participantCache;
     
     @Override
     public Message<?> preSend(Message<?> message, MessageChannel channel) {
         StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null) {
+            return message;
+        }
+        
+        if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            return authorizeSubscription(accessor) ? message : null;
+        }
+        if (StompCommand.UNSUBSCRIBE.equals(accessor.getCommand())) {
+            sessionRegistry.unsubscribe(accessor.getSessionId(), accessor.getSubscriptionId());
+        }
+        if (StompCommand.DISCONNECT.equals(accessor.getCommand())) {
+            sessionRegistry.remove(accessor.getSessionId());
+        }
         
-        if (accessor != null && StompCommand.CONNECT.equals(accessor.getCommand())) {
+        if (StompCommand.CONNECT.equals(accessor.getCommand())) {
             // Try to get token from Authorization header first
             String authHeader = accessor.getFirstNativeHeader("Authorization");
             String jwt = null;
@@ -82,8 +101,31 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
             } else {
                 log.warn("No JWT token found in WebSocket connection");
             }
+            
+            Principal user = accessor.getUser();
+            sessionRegistry.register(accessor.getSessionId(), user != null ? user.getName() : null,
+                    PayloadCodecInterceptor.negotiate(accessor.getFirstNativeHeader(PayloadCodecInterceptor.CODEC_HEADER),
+                            accessor.getSessionAttributes()));
         }
         
         return message;
     }
+    
+    /**
+     * Ride topics are limited to the ride's owner and users who have chatted in it, answered from
+     * the participant cache. Rejected subscriptions are dropped; the session stays open.
+     */
+    private boolean authorizeSubscription(StompHeaderAccessor accessor) {
+        String destination = accessor.getDestination();
+        Long rideId = StompSessionRegistry.parseRideTopic(destination);
+        if (rideId != null) {
+            Principal user = accessor.getUser();
+            if (user == null || !participantCache.isRideParticipant(rideId, Long.parseLong(user.getName()))) {
+                log.warn("Rejected subscription to {} by {}", destination, user != null ? user.getName() : "anonymous");
+                return false;
+            }
+        }
+        sessionRegistry.subscribe(accessor.getSessionId(), accessor.getSubscriptionId(), destination);
+        return true;
+    }
 }
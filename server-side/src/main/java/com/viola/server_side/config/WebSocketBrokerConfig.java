@@ -0,0 +1,62 @@
+package com.viola.server_side.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.config.annotation.DelegatingWebSocketMessageBrokerConfiguration;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+/**
+ * STOMP broker configuration; takes the place of {@code @EnableWebSocketMessageBroker} so sessions
+ * can be wrapped by {@link OutboundSessionPolicy} instead of Spring's blocking send decorator.
+ * {@link WebSocketConfig} still supplies the endpoints, channels and limits.
+ */
+@Configuration
+public class WebSocketBrokerConfig extends DelegatingWebSocketMessageBrokerConfiguration {
+
+    private final OutboundSessionPolicy outboundSessionPolicy;
+
+    public WebSocketBrokerConfig(OutboundSessionPolicy outboundSessionPolicy) {
+        this.outboundSessionPolicy = outboundSessionPolicy;
+    }
+
+    @Bean
+    @Override
+    public WebSocketHandler subProtocolWebSocketHandler(AbstractSubscribableChannel clientInboundChannel,
+                                                        AbstractSubscribableChannel clientOutboundChannel) {
+        PolicySubProtocolWebSocketHandler handler =
+                new PolicySubProtocolWebSocketHandler(clientInboundChannel, clientOutboundChannel, outboundSessionPolicy);
+        handler.setPhase(getPhase());
+        return handler;
+    }
+
+    static class PolicySubProtocolWebSocketHandler extends SubProtocolWebSocketHandler {
+
+        private final OutboundSessionPolicy policy;
+
+        PolicySubProtocolWebSocketHandler(MessageChannel clientInboundChannel, SubscribableChannel clientOutboundChannel,
+                                          OutboundSessionPolicy policy) {
+            super(clientInboundChannel, clientOutboundChannel);
+            this.policy = policy;
+        }
+
+        @Override
+        protected WebSocketSession decorateSession(WebSocketSession session) {
+            return policy.decorate(session, getSendTimeLimit(), getSendBufferSizeLimit());
+        }
+
+        @Override
+        public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+            try {
+                super.afterConnectionClosed(session, closeStatus);
+            } finally {
+                policy.release(session.getId());
+            }
+        }
+    }
+}
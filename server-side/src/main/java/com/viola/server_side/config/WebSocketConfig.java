@@ -3,14 +3,18 @@ package com.viola.server_side.config;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.messaging.simp.config.ChannelRegistration;
-import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import java.util.List;
+
+// The broker itself is enabled by WebSocketBrokerConfig
 @Configuration
-@EnableWebSocketMessageBroker
 @RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     
@@ -19,42 +23,86 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     
     private final WebSocketAuthInterceptor webSocketAuthInterceptor;
     private final WebSocketHandshakeInterceptor webSocketHandshakeInterceptor;
+    private final PayloadCodecInterceptor payloadCodecInterceptor;
+    
+    // Platform-thread pool sizes for the STOMP client channels; 0 keeps Spring's default (2 x CPUs)
+    @Value("${app.websocket.inbound-pool-size:0}")
+    private int inboundPoolSize;
+    
+    @Value("${app.websocket.outbound-pool-size:0}")
+    private int outboundPoolSize;
+    
+    // Per-session outbound limits; see OutboundSessionPolicy for what happens when they are exceeded
+    @Value("${app.websocket.outbound.send-time-limit-ms:10000}")
+    private int sendTimeLimit;
+    
+    @Value("${app.websocket.outbound.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
     
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.enableSimpleBroker("/topic", "/queue");
         config.setApplicationDestinationPrefixes("/app");
         config.setUserDestinationPrefix("/user");
+        // Channel executors run many messages of a session concurrently; keep each session's order
+        config.setPreservePublishOrder(true);
     }
     
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
-        // For development, allow all origins
-        if ("*".equals(allowedOrigins)) {
-            registry.addEndpoint("/ws")
-                    .setAllowedOriginPatterns("*")
-                    .addInterceptors(webSocketHandshakeInterceptor)
-                    .withSockJS()
-                    .setHeartbeatTime(25000)
-                    .setDisconnectDelay(5000);
-        } else {
-            // Split the allowed origins by comma and trim whitespace
-            String[] origins = allowedOrigins.split(",");
-            for (int i = 0; i < origins.length; i++) {
-                origins[i] = origins[i].trim();
-            }
-            
-            registry.addEndpoint("/ws")
-                    .setAllowedOriginPatterns(origins)
-                    .addInterceptors(webSocketHandshakeInterceptor)
-                    .withSockJS()
-                    .setHeartbeatTime(25000)
-                    .setDisconnectDelay(5000);
+        registry.setPreserveReceiveOrder(true);
+        
+        // Split the allowed origins by comma and trim whitespace ("*" allows all, for development)
+        String[] origins = allowedOrigins.split(",");
+        for (int i = 0; i < origins.length; i++) {
+            origins[i] = origins[i].trim();
         }
+        
+        registry.addEndpoint("/ws")
+                .setAllowedOriginPatterns(origins)
+                .addInterceptors(webSocketHandshakeInterceptor)
+                .withSockJS()
+                .setHeartbeatTime(25000)
+                .setDisconnectDelay(5000);
+        
+        // Plain WebSocket for clients that need no SockJS fallback; Tomcat negotiates
+        // permessage-deflate on it when the client offers the extension
+        registry.addEndpoint("/ws-native")
+                .setAllowedOriginPatterns(origins)
+                .addInterceptors(webSocketHandshakeInterceptor);
     }
     
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
         registration.interceptors(webSocketAuthInterceptor);
+        configurePoolSize(registration, inboundPoolSize);
+    }
+    
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(payloadCodecInterceptor);
+        configurePoolSize(registration, outboundPoolSize);
+    }
+    
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimit).setSendBufferSizeLimit(sendBufferSizeLimit);
+        registration.addDecoratorFactory(PayloadCodecInterceptor::binaryFrames);
+    }
+    
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // Decodes SEND frames with content-type application/cbor; Spring's JSON converter stays the default
+        MappingJackson2MessageConverter cborConverter =
+                new MappingJackson2MessageConverter(PayloadCodecInterceptor.cborMapper(), PayloadCodecInterceptor.CBOR);
+        cborConverter.setStrictContentTypeMatch(true);
+        messageConverters.add(cborConverter);
+        return true;
+    }
+    
+    private static void configurePoolSize(ChannelRegistration registration, int poolSize) {
+        if (poolSize > 0) {
+            registration.taskExecutor().corePoolSize(poolSize).maxPoolSize(poolSize);
+        }
     }
 }
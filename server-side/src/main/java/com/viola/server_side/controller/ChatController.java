@@ -2,17 +2,18 @@ package com.viola.server_side.controller;
 
 import com.viola.server_side.dto.ChatMessage;
 import com.viola.server_side.dto.MessageDto;
+import com.viola.server_side.dto.MessagePageDto;
 import com.viola.server_side.entity.Ride;
 import com.viola.server_side.repository.RideRepository;
 import com.viola.server_side.security.JwtUtil;
 import com.viola.server_side.service.ChatService;
+import com.viola.server_side.service.ChatMessageRouter;
+import com.viola.server_side.service.UnreadCounterService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.HttpStatus;
@@ -24,13 +25,11 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.ArrayList;
-import java.util.Set;
-import java.util.stream.Collectors;
-import com.viola.server_side.entity.Message;
+import com.viola.server_side.entity.ConversationSummary;
 import com.viola.server_side.entity.User;
 import com.viola.server_side.repository.UserRepository;
-import com.viola.server_side.repository.MessageRepository;
 
 @Controller
 @RequiredArgsConstructor
@@ -39,86 +38,35 @@ import com.viola.server_side.repository.MessageRepository;
 public class ChatController {
 
     private final ChatService chatService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ChatMessageRouter chatMessageRouter;
     private final RideRepository rideRepository;
     private final JwtUtil jwtUtil;
     private final UserRepository userRepository;
-    private final MessageRepository messageRepository;
+    private final UnreadCounterService unreadCounterService;
 
     @MessageMapping("/chat.sendMessage")
-    @SendTo("/topic/public")
-    public ChatMessage sendMessage(@Payload ChatMessage chatMessage) {
+    public void sendMessage(@Payload ChatMessage chatMessage) {
         log.info("Received message: {}", chatMessage);
         log.info("Message details - senderId: {}, rideId: {}, content: {}", 
                 chatMessage.getSenderId(), chatMessage.getRideId(), chatMessage.getContent());
         
         try {
-            // Save message to database
+            // Hand the message to the persistence pipeline; it may still be in flight when delivered
             MessageDto savedMessage = chatService.saveMessage(chatMessage);
-            log.info("Message saved to database with ID: {}", savedMessage.getId());
+            log.info("Message accepted with ID: {}", savedMessage.getId());
             
-            // Send to ride-specific chat if rideId is provided
-            if (chatMessage.getRideId() != null) {
-                String topic = "/topic/ride." + chatMessage.getRideId();
-                log.info("Broadcasting message to topic: {}", topic);
-                log.info("Message content: {}", chatMessage.getContent());
-                log.info("Message sender: {}", chatMessage.getSenderId());
-                log.info("Message receiver: {}", chatMessage.getReceiverId());
-                
-                try {
-                    messagingTemplate.convertAndSend(topic, chatMessage);
-                    log.info("Message successfully sent to topic: {}", topic);
-                } catch (Exception e) {
-                    log.error("Error broadcasting message to topic {}: {}", topic, e.getMessage(), e);
-                }
-            } else {
-                log.warn("No rideId provided for message, not sending to ride chat");
+            Long senderId = savedMessage.getSender().getId();
+            Long receiverId = savedMessage.getReceiver().getId();
+            if (chatMessage.getReceiverId() == null || chatMessage.getReceiverId().isEmpty()) {
+                // Ride chats default to the ride owner; tell clients who that was
+                chatMessage.setReceiverId(receiverId.toString());
             }
             
-            // Send to specific user if it's a private message
-            if (chatMessage.getReceiverId() != null && !chatMessage.getReceiverId().isEmpty()) {
-                log.info("Sending private message to user: {}", chatMessage.getReceiverId());
-                messagingTemplate.convertAndSendToUser(
-                    chatMessage.getReceiverId(),
-                    "/queue/private",
-                    chatMessage
-                );
-                log.info("Private message sent to user: {}", chatMessage.getReceiverId());
-                
-                // Send unread notification to receiver
-                log.info("Attempting to send unread notification to receiver: {}", chatMessage.getReceiverId());
-                try {
-                    // Find the conversation ID for this ride and users
-                    Long rideId = chatMessage.getRideId();
-                    Long senderId = Long.parseLong(chatMessage.getSenderId());
-                    Long receiverId = Long.parseLong(chatMessage.getReceiverId());
-                    
-                    log.info("Creating unread notification - rideId: {}, senderId: {}, receiverId: {}", rideId, senderId, receiverId);
-                    
-                    // Create notification with conversation ID (which is the ride ID)
-                    Map<String, Object> unreadNotification = new HashMap<>();
-                    unreadNotification.put("type", "unread_message");
-                    unreadNotification.put("conversationId", rideId); // Use ride ID as conversation ID
-                    unreadNotification.put("rideId", rideId);
-                    unreadNotification.put("senderId", senderId);
-                    unreadNotification.put("message", "You have a new message");
-                    
-                    log.info("Sending unread notification: {}", unreadNotification);
-                    
-                    messagingTemplate.convertAndSendToUser(
-                        chatMessage.getReceiverId(),
-                        "/queue/unread",
-                        unreadNotification
-                    );
-                    log.info("Unread notification sent to user: {}", chatMessage.getReceiverId());
-                } catch (Exception e) {
-                    log.error("Error sending unread notification: {}", e.getMessage(), e);
-                }
-            } else {
-                log.warn("No receiverId provided, skipping unread notification");
-            }
+            // Deliver to the sender's and receiver's sessions only
+            chatMessageRouter.route(chatMessage, senderId, receiverId);
             
-            return chatMessage;
+            // Bump the receiver's unread counter; the new counts are pushed to /user/queue/unread
+            unreadCounterService.onMessageSent(receiverId, chatMessage.getRideId());
         } catch (Exception e) {
             log.error("Error processing message: {}", e.getMessage(), e);
             throw e;
@@ -126,14 +74,12 @@ public class ChatController {
     }
 
     @MessageMapping("/chat.addUser")
-    @SendTo("/topic/public")
-    public ChatMessage addUser(@Payload ChatMessage chatMessage, SimpMessageHeaderAccessor headerAccessor) {
+    public void addUser(@Payload ChatMessage chatMessage, SimpMessageHeaderAccessor headerAccessor) {
         // Add username to web socket session
         headerAccessor.getSessionAttributes().put("username", chatMessage.getSenderId());
         headerAccessor.getSessionAttributes().put("rideId", chatMessage.getRideId());
         
         log.info("User {} joined chat for ride {}", chatMessage.getSenderId(), chatMessage.getRideId());
-        return chatMessage;
     }
 
     @MessageMapping("/chat.joinRide")
@@ -151,19 +97,8 @@ public class ChatController {
 
     @MessageMapping("/chat.private")
     public void sendPrivateMessage(@Payload ChatMessage chatMessage) {
-        // Send private message to specific user
-        messagingTemplate.convertAndSendToUser(
-            chatMessage.getReceiverId(),
-            "/queue/private",
-            chatMessage
-        );
-        
-        // Also send to sender (for confirmation)
-        messagingTemplate.convertAndSendToUser(
-            chatMessage.getSenderId(),
-            "/queue/private",
-            chatMessage
-        );
+        // Send to the receiver, and to the sender for confirmation
+        chatMessageRouter.route(chatMessage, parseUserId(chatMessage.getSenderId()), parseUserId(chatMessage.getReceiverId()));
     }
 
     // REST endpoints for chat history
@@ -184,26 +119,47 @@ public class ChatController {
             
             Long userId = jwtUtil.extractUserId(token);
             
-            // Get the ride to verify it exists
-            Ride ride = rideRepository.findById(rideId)
-                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Ride not found"));
-            
-            // Get all messages for this ride that involve the current user
-            // (either sent by or received by the current user)
-            List<Message> messages = messageRepository.findMessagesByRideId(rideId);
-            List<Message> userMessages = messages.stream()
-                    .filter(msg -> msg.getSender().getId().equals(userId) || msg.getReceiver().getId().equals(userId))
-                    .collect(Collectors.toList());
+            // Verify the ride exists
+            if (!rideRepository.existsById(rideId)) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Ride not found");
+            }
             
-            return userMessages.stream()
-                    .map(this::convertMessageToDto)
-                    .collect(Collectors.toList());
+            // Messages for this ride that involve the current user, filtered in the query
+            return chatService.getRideChatHistory(rideId, userId);
         } catch (Exception e) {
             log.error("Error getting chat history: {}", e.getMessage(), e);
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid JWT token");
         }
     }
 
+    @GetMapping("/api/chat/ride/{rideId}/history")
+    @ResponseBody
+    public MessagePageDto getRideChatPage(@PathVariable Long rideId,
+                                          @RequestParam(required = false) Long before,
+                                          @RequestParam(required = false) Integer limit,
+                                          HttpServletRequest request) {
+        String token = extractTokenFromRequest(request);
+        if (token == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Missing JWT token");
+        }
+        
+        Long userId;
+        try {
+            String username = jwtUtil.extractUsername(token);
+            if (!jwtUtil.validateToken(token, username)) {
+                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid JWT token");
+            }
+            userId = jwtUtil.extractUserId(token);
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid JWT token");
+        }
+        
+        if (!rideRepository.existsById(rideId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Ride not found");
+        }
+        return chatService.getRideChatPage(rideId, userId, before, limit);
+    }
+
     @GetMapping("/api/chat/conversation/{userId}")
     @ResponseBody
     public List<MessageDto> getConversationHistory(@PathVariable String userId) {
@@ -212,8 +168,23 @@ public class ChatController {
 
     @GetMapping("/api/chat/unread")
     @ResponseBody
-    public List<MessageDto> getUnreadMessages() {
-        return chatService.getUnreadMessagesForUser();
+    public List<MessageDto> getUnreadMessages(HttpServletRequest request) {
+        String token = extractTokenFromRequest(request);
+        if (token == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Missing JWT token");
+        }
+        
+        Long userId;
+        try {
+            String username = jwtUtil.extractUsername(token);
+            if (!jwtUtil.validateToken(token, username)) {
+                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid JWT token");
+            }
+            userId = jwtUtil.extractUserId(token);
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid JWT token");
+        }
+        return chatService.getUnreadMessagesForUser(userId);
     }
 
     @GetMapping("/api/chat/conversations")
@@ -232,39 +203,20 @@ public class ChatController {
             }
             
             Long userId = jwtUtil.extractUserId(token);
-        
-        // Get user's rides and conversations
-        List<Map<String, Object>> conversations = new ArrayList<>();
-        
-        // Get unread messages for this user to check which conversations have unread messages
-        List<Message> unreadMessages = messageRepository.findUnreadMessagesForUser(userId);
-        Set<Long> unreadRideIds = unreadMessages.stream()
-            .map(msg -> msg.getRide().getId())
-            .collect(Collectors.toSet());
-        
-        // Get rides created by the user
-        List<Ride> userRides = rideRepository.findByOwnerIdAndIsActiveTrueOrderByCreatedAtDesc(userId);
-        for (Ride ride : userRides) {
-            // Find the most recent message sender (other than the ride owner) to show as conversation partner
-            List<Message> rideMessages = messageRepository.findMessagesByRideId(ride.getId());
-            User conversationPartner = null;
-            Message lastMessage = null;
             
-            if (!rideMessages.isEmpty()) {
-                // Find the first message from someone other than the ride owner
-                for (Message msg : rideMessages) {
-                    if (!msg.getSender().getId().equals(userId)) {
-                        conversationPartner = msg.getSender();
-                        lastMessage = msg;
-                        break;
-                    }
+            // The UI keys conversations by ride: an owner chatting with several riders sees the ride once,
+            // with its most recent partner and the unread count summed across partners
+            Map<Long, Map<String, Object>> conversationsByRide = new LinkedHashMap<>();
+            for (ConversationSummary summary : chatService.getConversationSummaries(userId)) {
+                Ride ride = summary.getRide();
+                Map<String, Object> existing = conversationsByRide.get(ride.getId());
+                if (existing != null) {
+                    int unreadCount = (Integer) existing.get("unreadCount") + summary.getUnreadCount();
+                    existing.put("unreadCount", unreadCount);
+                    existing.put("hasUnreadMessages", unreadCount > 0);
+                    continue;
                 }
-            }
-            
-            // Only add conversation if there's actually a conversation partner (someone messaged about this ride)
-            if (conversationPartner != null && !conversationPartner.getId().equals(userId)) {
-                // Check if this conversation has unread messages
-                boolean hasUnreadMessages = unreadRideIds.contains(ride.getId());
+                User partner = summary.getPartner();
                 
                 Map<String, Object> conv = new HashMap<>();
                 conv.put("id", ride.getId());
@@ -274,71 +226,20 @@ public class ChatController {
                     "destination", ride.getDestination()
                 ));
                 conv.put("user", Map.of(
-                    "id", conversationPartner.getId(),
-                    "name", conversationPartner.getName(),
-                    "email", conversationPartner.getEmail()
+                    "id", partner.getId(),
+                    "name", partner.getName(),
+                    "email", partner.getEmail()
                 ));
-                conv.put("lastMessage", lastMessage != null ? lastMessage.getContent() : (ride.getPickup() + " to " + ride.getDestination()));
-                conv.put("lastMessageTime", lastMessage != null ? lastMessage.getCreatedAt() : ride.getCreatedAt());
-                conv.put("hasUnreadMessages", hasUnreadMessages);
-                conv.put("isOwner", true);
-                conversations.add(conv);
-            }
-        }
-        
-        // Get rides where user participated in chats (but didn't create the ride)
-        List<Message> userMessages = chatService.getMessagesByUserId(userId);
-        Set<Long> participatedRideIds = userMessages.stream()
-            .map(msg -> msg.getRide().getId())
-            .collect(Collectors.toSet());
-        
-        // Remove rides that user already owns (to avoid duplicates)
-        participatedRideIds.removeAll(userRides.stream().map(Ride::getId).collect(Collectors.toSet()));
-        
-        for (Long rideId : participatedRideIds) {
-            Ride ride = rideRepository.findById(rideId).orElse(null);
-            if (ride != null && ride.getIsActive()) {
-                // Find the last message in this conversation
-                List<Message> rideMessages = messageRepository.findMessagesByRideId(rideId);
-                Message lastMessage = null;
-                
-                // Find the most recent message in this conversation
-                for (Message msg : rideMessages) {
-                    if ((msg.getSender().getId().equals(userId) && msg.getReceiver().getId().equals(ride.getOwner().getId())) ||
-                        (msg.getSender().getId().equals(ride.getOwner().getId()) && msg.getReceiver().getId().equals(userId))) {
-                        if (lastMessage == null || msg.getCreatedAt().isAfter(lastMessage.getCreatedAt())) {
-                            lastMessage = msg;
-                        }
-                    }
-                }
-                
-                // Only add if there's actually a conversation (not just a self-message)
-                if (lastMessage != null) {
-                    // Check if this conversation has unread messages
-                    boolean hasUnreadMessages = unreadRideIds.contains(rideId);
-                    
-                    Map<String, Object> conv = new HashMap<>();
-                    conv.put("id", ride.getId());
-                    conv.put("ride", Map.of(
-                        "id", ride.getId(),
-                        "pickup", ride.getPickup(),
-                        "destination", ride.getDestination()
-                    ));
-                    conv.put("user", Map.of(
-                        "id", ride.getOwner().getId(),
-                        "name", ride.getOwner().getName(),
-                        "email", ride.getOwner().getEmail()
-                    ));
-                    conv.put("lastMessage", lastMessage.getContent());
-                    conv.put("lastMessageTime", lastMessage.getCreatedAt());
-                    conv.put("hasUnreadMessages", hasUnreadMessages);
-                    conv.put("isOwner", false);
-                    conversations.add(conv);
-                }
+                conv.put("lastMessage", summary.getLastMessage());
+                conv.put("lastMessageTime", summary.getLastMessageAt());
+                conv.put("hasUnreadMessages", summary.getUnreadCount() > 0);
+                conv.put("unreadCount", summary.getUnreadCount());
+                conv.put("isOwner", ride.getOwner().getId().equals(userId));
+                conversationsByRide.put(ride.getId(), conv);
             }
-        }
-        
-        return conversations;
+            List<Map<String, Object>> conversations = new ArrayList<>(conversationsByRide.values());
+            
+            return conversations;
         } catch (Exception e) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid JWT token");
         }
@@ -360,9 +261,7 @@ public class ChatController {
             
             Long userId = jwtUtil.extractUserId(token);
             
-            // Get unread messages count
-            List<Message> unreadMessages = messageRepository.findUnreadMessagesForUser(userId);
-            int count = unreadMessages.size();
+            int count = unreadCounterService.getTotalUnread(userId);
             
             Map<String, Object> response = new HashMap<>();
             response.put("count", count);
@@ -389,14 +288,8 @@ public class ChatController {
             
             Long userId = jwtUtil.extractUserId(token);
             
-            // Mark all unread messages for this ride as read
-            List<Message> unreadMessages = messageRepository.findUnreadMessagesForUser(userId);
-            for (Message message : unreadMessages) {
-                if (message.getRide().getId().equals(rideId)) {
-                    message.setIsRead(true);
-                    messageRepository.save(message);
-                }
-            }
+            chatService.markRideAsRead(userId, rideId);
+            unreadCounterService.onRideRead(userId, rideId);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -406,6 +299,10 @@ public class ChatController {
         }
     }
     
+    private static Long parseUserId(String userId) {
+        return userId == null || userId.isEmpty() ? null : Long.parseLong(userId);
+    }
+    
     private String extractTokenFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (bearerToken != null && bearerToken.startsWith("Bearer ")) {
@@ -413,34 +310,4 @@ public class ChatController {
         }
         throw new RuntimeException("No valid token found");
     }
-    
-    private MessageDto convertMessageToDto(Message message) {
-        MessageDto dto = new MessageDto();
-        dto.setId(message.getId());
-        dto.setContent(message.getContent());
-        dto.setCreatedAt(message.getCreatedAt());
-        dto.setIsRead(message.getIsRead());
-        dto.setRideId(message.getRide() != null ? message.getRide().getId() : null);
-        
-        if (message.getSender() != null) {
-            dto.setSender(convertUserToDto(message.getSender()));
-        }
-        
-        if (message.getReceiver() != null) {
-            dto.setReceiver(convertUserToDto(message.getReceiver()));
-        }
-        
-        return dto;
-    }
-    
-    private com.viola.server_side.dto.UserDto convertUserToDto(User user) {
-        com.viola.server_side.dto.UserDto dto = new com.viola.server_side.dto.UserDto();
-        dto.setId(user.getId());
-        dto.setEmail(user.getEmail());
-        dto.setName(user.getName());
-        dto.setPhotoUrl(user.getPhotoUrl());
-        dto.setIsVerified(user.getIsVerified());
-        dto.setCreatedAt(user.getCreatedAt());
-        return dto;
-    }
 }
@@ -1,15 +1,31 @@
 package com.viola.server_side.controller;
 
 import com.viola.server_side.dto.CreateRideRequest;
+import com.viola.server_side.dto.NearbyRideDto;
 import com.viola.server_side.dto.RideDto;
+import com.viola.server_side.dto.RideFeedChangesDto;
+import com.viola.server_side.dto.RideFeedSnapshotDto;
+import com.viola.server_side.dto.RideMatchDto;
+import com.viola.server_side.dto.RideMatchRequest;
+import com.viola.server_side.dto.RidePageDto;
+import com.viola.server_side.entity.GenderPreference;
 import com.viola.server_side.security.JwtUtil;
+import com.viola.server_side.service.RideMatchingService;
 import com.viola.server_side.service.RideService;
+import com.viola.server_side.service.RideSpatialIndex;
+import com.viola.server_side.service.RideVersionTracker;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -20,17 +36,121 @@ public class RideController {
     
     private final RideService rideService;
     private final JwtUtil jwtUtil;
+    private final RideVersionTracker rideVersionTracker;
+    private final RideMatchingService rideMatchingService;
     
     @GetMapping
-    public ResponseEntity<List<RideDto>> getAllRides() {
+    public ResponseEntity<List<RideDto>> getAllRides(WebRequest webRequest) {
+        // Resolve the ETag before loading so an unchanged poll skips both the lookup and serialization
+        String etag = rideVersionTracker.allRidesETag();
+        if (webRequest.checkNotModified(etag)) {
+            return notModified(etag);
+        }
         List<RideDto> rides = rideService.getAllActiveRides();
-        return ResponseEntity.ok(rides);
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(rides);
+    }
+    
+    @GetMapping("/feed")
+    public ResponseEntity<RidePageDto> getRideFeed(@RequestParam(required = false) String cursor,
+                                                   @RequestParam(required = false) Integer limit,
+                                                   @RequestParam(required = false) String date,
+                                                   @RequestParam(required = false) GenderPreference genderPreference,
+                                                   @RequestParam(required = false) Boolean negotiable) {
+        try {
+            RidePageDto page = rideService.getActiveRideFeed(cursor, limit, date, genderPreference, negotiable);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+    
+    @GetMapping("/snapshot")
+    public ResponseEntity<RideFeedSnapshotDto> getRideFeedSnapshot() {
+        return ResponseEntity.ok(rideService.getRideFeedSnapshot());
+    }
+    
+    @GetMapping("/changes")
+    public ResponseEntity<RideFeedChangesDto> getRideFeedChanges(@RequestParam long since) {
+        // 410 tells the client its sequence is too old (or unknown) and it must reload the snapshot
+        return rideService.getRideFeedChangesSince(since)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.GONE, "Ride feed sequence expired"));
+    }
+    
+    @GetMapping("/search")
+    public ResponseEntity<RidePageDto> searchRides(@RequestParam("q") String query,
+                                                   @RequestParam(required = false) String cursor,
+                                                   @RequestParam(required = false) Integer limit) {
+        try {
+            RidePageDto page = rideService.searchActiveRides(query, cursor, limit);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+    
+    @GetMapping("/upcoming")
+    public ResponseEntity<List<RideDto>> getUpcomingRides(
+            @RequestParam(required = false) Long withinHours,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        try {
+            List<RideDto> rides = from != null && to != null
+                    ? rideService.getRidesDepartingBetween(from, to)
+                    : rideService.getRidesDepartingWithin(withinHours != null ? withinHours : 6);
+            return ResponseEntity.ok(rides);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+    
+    @GetMapping("/nearby")
+    public ResponseEntity<List<NearbyRideDto>> getNearbyRides(
+            @RequestParam double pickupLat,
+            @RequestParam double pickupLng,
+            @RequestParam(required = false) Double destinationLat,
+            @RequestParam(required = false) Double destinationLng,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Double radiusKm) {
+        // Unbounded values would make the grid scan walk an arbitrary number of cells
+        if (!RideSpatialIndex.isValidCoordinate(pickupLat, pickupLng)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Pickup coordinates out of range");
+        }
+        if (destinationLat != null && destinationLng != null
+                && !RideSpatialIndex.isValidCoordinate(destinationLat, destinationLng)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Destination coordinates out of range");
+        }
+        if (radiusKm != null && !Double.isFinite(radiusKm)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Radius must be a finite number");
+        }
+        try {
+            List<NearbyRideDto> rides = rideService.findNearbyRides(pickupLat, pickupLng, destinationLat,
+                    destinationLng, from, to, limit, radiusKm);
+            return ResponseEntity.ok(rides);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+    
+    @PostMapping("/match")
+    public ResponseEntity<List<RideMatchDto>> matchRides(@Valid @RequestBody RideMatchRequest request) {
+        try {
+            return ResponseEntity.ok(rideMatchingService.match(request));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
     
     @GetMapping("/{rideId}")
-    public ResponseEntity<RideDto> getRideById(@PathVariable Long rideId) {
+    public ResponseEntity<RideDto> getRideById(@PathVariable Long rideId, WebRequest webRequest) {
+        String etag = rideVersionTracker.rideETag(rideId);
+        if (webRequest.checkNotModified(etag)) {
+            return notModified(etag);
+        }
         RideDto ride = rideService.getRideById(rideId);
-        return ResponseEntity.ok(ride);
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(ride);
     }
     
     @PostMapping
@@ -75,12 +195,20 @@ public class RideController {
     }
     
     @GetMapping("/my-rides")
-    public ResponseEntity<List<RideDto>> getMyRides(HttpServletRequest httpRequest) {
+    public ResponseEntity<List<RideDto>> getMyRides(HttpServletRequest httpRequest, WebRequest webRequest) {
         String token = extractTokenFromRequest(httpRequest);
         Long userId = jwtUtil.extractUserId(token);
         
+        String etag = rideVersionTracker.ownerRidesETag(userId);
+        if (webRequest.checkNotModified(etag)) {
+            return notModified(etag);
+        }
         List<RideDto> rides = rideService.getRidesByOwner(userId);
-        return ResponseEntity.ok(rides);
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(rides);
+    }
+    
+    private static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
     }
     
     private String extractTokenFromRequest(HttpServletRequest request) {
@@ -1,5 +1,6 @@
 package com.viola.server_side.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
@@ -9,7 +10,9 @@ import java.time.LocalDateTime;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL) // Unset fields (names, photo, session) are left out of every frame
 public class ChatMessage {
+    private Long id; // Assigned by the server when the message is accepted
     private String type; // "CHAT", "JOIN", "LEAVE"
     private String content;
     private String senderId;
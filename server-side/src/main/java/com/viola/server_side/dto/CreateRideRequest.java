@@ -1,6 +1,9 @@
 package com.viola.server_side.dto;
 
 import com.viola.server_side.entity.GenderPreference;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Pattern;
@@ -39,4 +42,31 @@ public class CreateRideRequest {
     
     @NotNull(message = "Gender preference is required")
     private GenderPreference genderPreference = GenderPreference.ANYONE;
+    
+    // Optional coordinates; a latitude must come with its longitude
+    @DecimalMin(value = "-90.0", message = "Pickup latitude must be between -90 and 90")
+    @DecimalMax(value = "90.0", message = "Pickup latitude must be between -90 and 90")
+    private Double pickupLat;
+    
+    @DecimalMin(value = "-180.0", message = "Pickup longitude must be between -180 and 180")
+    @DecimalMax(value = "180.0", message = "Pickup longitude must be between -180 and 180")
+    private Double pickupLng;
+    
+    @DecimalMin(value = "-90.0", message = "Destination latitude must be between -90 and 90")
+    @DecimalMax(value = "90.0", message = "Destination latitude must be between -90 and 90")
+    private Double destinationLat;
+    
+    @DecimalMin(value = "-180.0", message = "Destination longitude must be between -180 and 180")
+    @DecimalMax(value = "180.0", message = "Destination longitude must be between -180 and 180")
+    private Double destinationLng;
+    
+    @AssertTrue(message = "Pickup coordinates require both latitude and longitude")
+    private boolean isPickupCoordinatesComplete() {
+        return (pickupLat == null) == (pickupLng == null);
+    }
+    
+    @AssertTrue(message = "Destination coordinates require both latitude and longitude")
+    private boolean isDestinationCoordinatesComplete() {
+        return (destinationLat == null) == (destinationLng == null);
+    }
 }
@@ -0,0 +1,16 @@
+package com.viola.server_side.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessagePageDto {
+    private List<MessageDto> messages; // Oldest first within the page
+    private Long nextBefore; // Pass as "before" to load older messages, null when there are none
+    private Boolean hasMore;
+}
@@ -0,0 +1,14 @@
+package com.viola.server_side.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbyRideDto {
+    private RideDto ride;
+    private Double pickupDistanceKm;
+    private Double destinationDistanceKm; // Null when no destination was given
+}
@@ -4,6 +4,7 @@ import com.viola.server_side.entity.GenderPreference;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.With;
 
 import java.time.LocalDateTime;
 
@@ -16,11 +17,17 @@ public class RideDto {
     private String destination;
     private String rideDate;
     private String rideTime;
+    private LocalDateTime departureAt;
     private String price;
     private Boolean negotiable;
     private String description;
     private GenderPreference genderPreference;
+    @With
     private UserDto owner;
     private Boolean isActive;
     private LocalDateTime createdAt;
+    private Double pickupLat;
+    private Double pickupLng;
+    private Double destinationLat;
+    private Double destinationLng;
 }
@@ -0,0 +1,15 @@
+package com.viola.server_side.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RideFeedChangesDto {
+    private Long sequence;
+    private List<RideFeedEvent> events;
+}
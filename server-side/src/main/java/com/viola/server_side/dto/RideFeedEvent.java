@@ -0,0 +1,15 @@
+package com.viola.server_side.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RideFeedEvent {
+    private String type; // "UPSERT", "REMOVE"
+    private Long sequence;
+    private Long rideId;
+    private RideDto ride; // Null for REMOVE
+}
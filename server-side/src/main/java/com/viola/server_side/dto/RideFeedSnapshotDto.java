@@ -0,0 +1,15 @@
+package com.viola.server_side.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RideFeedSnapshotDto {
+    private Long sequence; // Apply /topic/rides events with a greater sequence on top of these rides
+    private List<RideDto> rides;
+}
@@ -0,0 +1,13 @@
+package com.viola.server_side.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RideMatchDto {
+    private RideDto ride;
+    private Double score; // 0..1, higher is a better match
+}
@@ -0,0 +1,34 @@
+package com.viola.server_side.dto;
+
+import com.viola.server_side.entity.GenderPreference;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RideMatchRequest {
+    
+    @NotBlank(message = "Pickup location is required")
+    private String pickup;
+    
+    @NotBlank(message = "Destination is required")
+    private String destination;
+    
+    // Optional departure window
+    private LocalDateTime departureFrom;
+    private LocalDateTime departureTo;
+    
+    // Null or ANYONE accepts rides with any preference
+    private GenderPreference genderPreference;
+    
+    @Positive(message = "Maximum price must be positive")
+    private Long maxPrice;
+    
+    private Integer limit;
+}
@@ -0,0 +1,16 @@
+package com.viola.server_side.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RidePageDto {
+    private List<RideDto> rides;
+    private String nextCursor; // Opaque token for the next page, null on the last page
+    private Boolean hasMore;
+}
@@ -0,0 +1,57 @@
+package com.viola.server_side.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One participant's view of a ride conversation with one partner: the latest message and how many
+ * messages from the partner that participant has not read. Each message updates two rows (sender's
+ * and receiver's view), written by {@link com.viola.server_side.service.ConversationSummaryWriter}
+ * in the same transaction as the message itself.
+ */
+@Entity
+@Table(name = "conversation_summary", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_conversation_summary_user_ride_partner", columnNames = {"user_id", "ride_id", "partner_id"})
+}, indexes = {
+    @Index(name = "idx_conversation_summary_user_last", columnList = "user_id, last_message_at"),
+    @Index(name = "idx_conversation_summary_ride_user", columnList = "ride_id, user_id")
+})
+@Data
+@NoArgsConstructor
+public class ConversationSummary {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "conversation_summary_seq")
+    @SequenceGenerator(name = "conversation_summary_seq", sequenceName = "conversation_summary_seq", allocationSize = 50)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "partner_id", nullable = false)
+    private User partner;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "ride_id", nullable = false)
+    private Ride ride;
+    
+    @Column(name = "last_message_id", nullable = false)
+    private Long lastMessageId;
+    
+    @Column(name = "last_message", columnDefinition = "TEXT", nullable = false)
+    private String lastMessage;
+    
+    @Column(name = "last_sender_id", nullable = false)
+    private Long lastSenderId;
+    
+    @Column(name = "last_message_at", nullable = false)
+    private LocalDateTime lastMessageAt;
+    
+    @Column(name = "unread_count", nullable = false)
+    private Integer unreadCount = 0;
+}
@@ -9,14 +9,19 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+    @Index(name = "idx_messages_ride_receiver_created", columnList = "ride_id, receiver_id, created_at, id"),
+    @Index(name = "idx_messages_receiver_created", columnList = "receiver_id, created_at, id"),
+    @Index(name = "idx_messages_ride_created_id", columnList = "ride_id, created_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Message {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "messages_seq")
+    @SequenceGenerator(name = "messages_seq", sequenceName = "messages_seq", allocationSize = 50)
     private Long id;
     
     @Column(columnDefinition = "TEXT", nullable = false)
@@ -42,6 +47,7 @@ public class Message {
         this.ride = ride;
     }
 
+    // Superseded by ReadWatermark; kept for existing rows and no longer updated
     @Column(name = "is_read")
     private Boolean isRead = false;
     
@@ -0,0 +1,42 @@
+package com.viola.server_side.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Newest message a user has read in a ride's chat, as its (created_at, id) position. Messages to the
+ * user in that ride after that position are unread, which replaces flipping {@code messages.is_read}
+ * row by row. Ids are not compared alone: each node allocates them from its own block of the shared
+ * sequence, so id order is not send order once several nodes write.
+ */
+@Entity
+@Table(name = "read_watermarks", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_read_watermarks_user_ride", columnNames = {"user_id", "ride_id"})
+})
+@Data
+@NoArgsConstructor
+public class ReadWatermark {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "read_watermarks_seq")
+    @SequenceGenerator(name = "read_watermarks_seq", sequenceName = "read_watermarks_seq", allocationSize = 50)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "ride_id", nullable = false)
+    private Ride ride;
+    
+    @Column(name = "last_read_message_id", nullable = false)
+    private Long lastReadMessageId;
+    
+    // Nullable only so ddl-auto can add it to existing rows; the backfill script fills it in
+    @Column(name = "last_read_at")
+    private LocalDateTime lastReadAt;
+}
@@ -10,14 +10,18 @@ import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "rides")
+@Table(name = "rides", indexes = {
+    @Index(name = "idx_rides_active_created_id", columnList = "is_active, created_at, id"),
+    @Index(name = "idx_rides_active_departure", columnList = "is_active, departure_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Ride {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "rides_seq")
+    @SequenceGenerator(name = "rides_seq", sequenceName = "rides_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false)
@@ -26,12 +30,29 @@ public class Ride {
     @Column(nullable = false)
     private String destination;
     
+    // Optional coordinates for proximity matching
+    @Column(name = "pickup_lat")
+    private Double pickupLat;
+    
+    @Column(name = "pickup_lng")
+    private Double pickupLng;
+    
+    @Column(name = "destination_lat")
+    private Double destinationLat;
+    
+    @Column(name = "destination_lng")
+    private Double destinationLng;
+    
     @Column(name = "ride_date", nullable = false)
     private String rideDate;
     
     @Column(name = "ride_time", nullable = false)
     private String rideTime;
     
+    // Typed departure derived from rideDate + rideTime, used for time-window queries
+    @Column(name = "departure_at")
+    private LocalDateTime departureAt;
+    
     @Column(nullable = false)
     private String price;
     
@@ -52,6 +73,10 @@ public class Ride {
     @Column(name = "is_active")
     private Boolean isActive = true;
     
+    // Set when a permanent delete was handed to the background message purge; hidden from reads
+    @Column(name = "purge_pending", nullable = false, columnDefinition = "boolean default false")
+    private Boolean purgePending = false;
+    
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,37 @@
+package com.viola.server_side.repository;
+
+import com.viola.server_side.entity.ConversationSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ConversationSummaryRepository extends JpaRepository<ConversationSummary, Long> {
+    
+    // Inbox: one index range scan on (user_id, last_message_at) joined to the ride and partner
+    @Query("SELECT s FROM ConversationSummary s JOIN FETCH s.ride r JOIN FETCH s.partner " +
+           "WHERE s.user.id = :userId AND r.isActive = true " +
+           "ORDER BY s.lastMessageAt DESC")
+    List<ConversationSummary> findInbox(Long userId);
+    
+    // Unread counts per ride, read from the (user_id, ...) index instead of counting messages
+    @Query("SELECT s.ride.id, SUM(s.unreadCount) FROM ConversationSummary s " +
+           "WHERE s.user.id = :userId AND s.unreadCount > 0 GROUP BY s.ride.id")
+    List<Object[]> countUnreadByRide(Long userId);
+    
+    // Everyone who has chatted in the ride, from the (ride_id, user_id) index
+    @Query("SELECT DISTINCT s.user.id FROM ConversationSummary s WHERE s.ride.id = :rideId")
+    List<Long> findUserIdsByRideId(Long rideId);
+    
+    @Modifying
+    @Query("UPDATE ConversationSummary s SET s.unreadCount = 0 " +
+           "WHERE s.user.id = :userId AND s.ride.id = :rideId AND s.unreadCount > 0")
+    int markRideRead(Long userId, Long rideId);
+    
+    @Modifying
+    @Query("DELETE FROM ConversationSummary s WHERE s.ride.id = :rideId")
+    int deleteAllByRideIdInBulk(Long rideId);
+}
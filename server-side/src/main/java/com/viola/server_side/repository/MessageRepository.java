@@ -1,7 +1,9 @@
 package com.viola.server_side.repository;
 
 import com.viola.server_side.entity.Message;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
@@ -27,13 +29,53 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
            "ORDER BY m.createdAt ASC")
     List<Message> findMessagesByRideId(Long rideId);
     
-    @Query("SELECT m FROM Message m WHERE m.receiver.id = :userId AND m.isRead = false AND m.sender.id != :userId " +
-           "ORDER BY m.createdAt DESC")
+    // Ride chat history limited to the caller's messages, with sender and receiver fetched in the same query
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender JOIN FETCH m.receiver " +
+           "WHERE m.ride.id = :rideId AND (m.sender.id = :userId OR m.receiver.id = :userId) " +
+           "ORDER BY m.createdAt ASC, m.id ASC")
+    List<Message> findRideHistoryForParticipant(Long rideId, Long userId);
+    
+    // Newest-first history pages walk idx_messages_ride_created_id backwards from the cursor message
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender JOIN FETCH m.receiver " +
+           "WHERE m.ride.id = :rideId AND (m.sender.id = :userId OR m.receiver.id = :userId) " +
+           "ORDER BY m.createdAt DESC, m.id DESC")
+    List<Message> findRideHistoryPage(Long rideId, Long userId, Pageable pageable);
+    
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender JOIN FETCH m.receiver " +
+           "WHERE m.ride.id = :rideId AND (m.sender.id = :userId OR m.receiver.id = :userId) " +
+           "AND (m.createdAt < (SELECT b.createdAt FROM Message b WHERE b.id = :beforeId) " +
+           "OR (m.createdAt = (SELECT b.createdAt FROM Message b WHERE b.id = :beforeId) AND m.id < :beforeId)) " +
+           "ORDER BY m.createdAt DESC, m.id DESC")
+    List<Message> findRideHistoryPageBefore(Long rideId, Long userId, Long beforeId, Pageable pageable);
+    
+    // Newest messages of a ride for all participants, used to seed the recent-message cache
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender JOIN FETCH m.receiver " +
+           "WHERE m.ride.id = :rideId ORDER BY m.createdAt DESC, m.id DESC")
+    List<Message> findNewestByRideId(Long rideId, Pageable pageable);
+    
+    // Unread means after the user's read watermark for the ride, in (createdAt, id) order; the user's
+    // received messages come newest first from idx_messages_receiver_created
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender JOIN FETCH m.receiver " +
+           "WHERE m.receiver.id = :userId AND m.sender.id != :userId AND m.ride IS NOT NULL " +
+           "AND NOT EXISTS (SELECT w FROM ReadWatermark w WHERE w.user.id = :userId AND w.ride = m.ride " +
+           "AND (m.createdAt < w.lastReadAt OR (m.createdAt = w.lastReadAt AND m.id <= w.lastReadMessageId))) " +
+           "ORDER BY m.createdAt DESC, m.id DESC")
     List<Message> findUnreadMessagesForUser(Long userId);
     
     @Query("SELECT m FROM Message m WHERE m.sender.id = :userId " +
            "ORDER BY m.createdAt DESC")
     List<Message> findMessagesBySenderId(Long userId);
     
-    void deleteByRideId(Long rideId);
+    long countByRideId(Long rideId);
+    
+    @Modifying
+    @Query("DELETE FROM Message m WHERE m.ride.id = :rideId")
+    int deleteAllByRideIdInBulk(Long rideId);
+    
+    // Bounded chunk for the background purge of large chats
+    @Modifying
+    @Query(value = "DELETE FROM messages WHERE id IN " +
+                   "(SELECT id FROM messages WHERE ride_id = :rideId LIMIT :batchSize)",
+           nativeQuery = true)
+    int deleteBatchByRideId(Long rideId, int batchSize);
 }
@@ -0,0 +1,30 @@
+package com.viola.server_side.repository;
+
+import com.viola.server_side.entity.ReadWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReadWatermarkRepository extends JpaRepository<ReadWatermark, Long> {
+    
+    // Moves the watermark up to the newest (created_at, id) message the user received in the ride,
+    // read from the top of idx_messages_ride_receiver_created, in one statement; it never moves backwards
+    @Modifying
+    @Query(value = "INSERT INTO read_watermarks (id, user_id, ride_id, last_read_message_id, last_read_at) " +
+                   "SELECT nextval('read_watermarks_seq'), :userId, :rideId, n.id, n.created_at FROM (" +
+                   "SELECT m.id, m.created_at FROM messages m WHERE m.ride_id = :rideId AND m.receiver_id = :userId " +
+                   "ORDER BY m.created_at DESC, m.id DESC LIMIT 1) n " +
+                   "ON CONFLICT (user_id, ride_id) DO UPDATE SET " +
+                   "last_read_message_id = EXCLUDED.last_read_message_id, last_read_at = EXCLUDED.last_read_at " +
+                   "WHERE read_watermarks.last_read_at IS NULL " +
+                   "OR (EXCLUDED.last_read_at, EXCLUDED.last_read_message_id) > " +
+                   "(read_watermarks.last_read_at, read_watermarks.last_read_message_id)",
+           nativeQuery = true)
+    int markRideRead(Long userId, Long rideId);
+    
+    @Modifying
+    @Query("DELETE FROM ReadWatermark w WHERE w.ride.id = :rideId")
+    int deleteAllByRideIdInBulk(Long rideId);
+}
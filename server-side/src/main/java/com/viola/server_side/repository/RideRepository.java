@@ -1,25 +1,105 @@
 package com.viola.server_side.repository;
 
+import com.viola.server_side.entity.GenderPreference;
 import com.viola.server_side.entity.Ride;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface RideRepository extends JpaRepository<Ride, Long> {
     
+    // Read paths that render RideDto load the owner in the same statement to avoid N+1 lookups
+    
+    @EntityGraph(attributePaths = "owner")
+    Optional<Ride> findWithOwnerById(Long id);
+    
+    @EntityGraph(attributePaths = "owner")
     List<Ride> findByIsActiveTrueOrderByCreatedAtDesc();
     
+    @EntityGraph(attributePaths = "owner")
+    List<Ride> findWithOwnerByIdIn(Collection<Long> ids);
+    
+    @EntityGraph(attributePaths = "owner")
+    @Query("SELECT r FROM Ride r WHERE r.isActive = true " +
+           "AND (:rideDate IS NULL OR r.rideDate = :rideDate) " +
+           "AND (:genderPreference IS NULL OR r.genderPreference = :genderPreference) " +
+           "AND (:negotiable IS NULL OR r.negotiable = :negotiable) " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    List<Ride> findActiveFeedPage(String rideDate, GenderPreference genderPreference,
+                                  Boolean negotiable, Pageable pageable);
+    
+    @EntityGraph(attributePaths = "owner")
+    @Query("SELECT r FROM Ride r WHERE r.isActive = true " +
+           "AND (r.createdAt < :cursorCreatedAt OR (r.createdAt = :cursorCreatedAt AND r.id < :cursorId)) " +
+           "AND (:rideDate IS NULL OR r.rideDate = :rideDate) " +
+           "AND (:genderPreference IS NULL OR r.genderPreference = :genderPreference) " +
+           "AND (:negotiable IS NULL OR r.negotiable = :negotiable) " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    List<Ride> findActiveFeedPageAfter(LocalDateTime cursorCreatedAt, Long cursorId, String rideDate,
+                                       GenderPreference genderPreference, Boolean negotiable, Pageable pageable);
+    
+    @EntityGraph(attributePaths = "owner")
     List<Ride> findByOwnerIdAndIsActiveTrueOrderByCreatedAtDesc(Long ownerId);
     
-    List<Ride> findByOwnerIdOrderByCreatedAtDesc(Long ownerId);
+    long countByIsActiveTrue();
+    
+    @EntityGraph(attributePaths = "owner")
+    List<Ride> findByOwnerIdAndPurgePendingFalseOrderByCreatedAtDesc(Long ownerId);
+    
+    @Query("SELECT r.owner.id FROM Ride r WHERE r.id = :id AND r.purgePending = false")
+    Optional<Long> findOwnerIdById(Long id);
     
-    @Query("SELECT r FROM Ride r WHERE r.isActive = true AND r.rideTime >= :now ORDER BY r.rideTime ASC")
+    @Query("SELECT r.id FROM Ride r WHERE r.purgePending = true ORDER BY r.id")
+    List<Long> findPurgePendingIds(Pageable pageable);
+    
+    @Query("SELECT r FROM Ride r JOIN FETCH r.owner WHERE r.isActive = true AND r.departureAt >= :now " +
+           "ORDER BY r.departureAt ASC, r.id ASC")
     List<Ride> findUpcomingRides(LocalDateTime now);
     
-    List<Ride> findByPickupContainingIgnoreCaseOrDestinationContainingIgnoreCaseAndIsActiveTrue(
-            String pickup, String destination);
+    @EntityGraph(attributePaths = "owner")
+    List<Ride> findByIsActiveTrueAndPickupLatIsNotNull();
+    
+    // Index range scan on (is_active, departure_at)
+    @Query("SELECT r FROM Ride r JOIN FETCH r.owner WHERE r.isActive = true " +
+           "AND r.departureAt >= :from AND r.departureAt < :to " +
+           "ORDER BY r.departureAt ASC, r.id ASC")
+    List<Ride> findActiveDepartingBetween(LocalDateTime from, LocalDateTime to);
+    
+    // Set-based expiry batch; SKIP LOCKED lets concurrent nodes claim disjoint rows
+    @Query(value = "UPDATE rides SET is_active = false, updated_at = now() " +
+                   "WHERE id IN (SELECT id FROM rides WHERE is_active = true AND departure_at < :cutoff " +
+                   "ORDER BY departure_at LIMIT :batchSize FOR UPDATE SKIP LOCKED) " +
+                   "RETURNING id",
+           nativeQuery = true)
+    List<Long> expireRidesDepartedBefore(LocalDateTime cutoff, int batchSize);
+    
+    // Served by the pg_trgm GIN indexes from db/rides-search-indexes.sql; returns ids ranked by relevance
+    @Query(value = "SELECT r.id FROM rides r WHERE r.is_active = true " +
+                   "AND (r.pickup ILIKE :pattern OR r.destination ILIKE :pattern " +
+                   "OR r.pickup % :query OR r.destination % :query) " +
+                   "ORDER BY GREATEST(similarity(r.pickup, :query), similarity(r.destination, :query)) DESC, " +
+                   "r.created_at DESC, r.id DESC " +
+                   "LIMIT :limit OFFSET :offset",
+           nativeQuery = true)
+    List<Long> searchActiveRideIds(String query, String pattern, int limit, long offset);
+    
+    // Search without pg_trgm: substring matches only, ranked prefix matches first
+    @Query(value = "SELECT r.id FROM rides r WHERE r.is_active = true " +
+                   "AND (r.pickup ILIKE :pattern OR r.destination ILIKE :pattern) " +
+                   "ORDER BY (r.pickup ILIKE :prefixPattern OR r.destination ILIKE :prefixPattern) DESC, " +
+                   "r.created_at DESC, r.id DESC " +
+                   "LIMIT :limit OFFSET :offset",
+           nativeQuery = true)
+    List<Long> searchActiveRideIdsByPattern(String pattern, String prefixPattern, int limit, long offset);
+    
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm')", nativeQuery = true)
+    boolean isTrigramExtensionInstalled();
 }
@@ -32,8 +32,9 @@ public class SecurityConfig {
             .csrf(AbstractHttpConfigurer::disable)
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .authorizeHttpRequests(auth -> auth
-                .requestMatchers("/api/auth/**", "/ws/**").permitAll()
-                .requestMatchers("/api/rides").permitAll()
+                .requestMatchers("/api/auth/**", "/ws/**", "/ws-native").permitAll()
+                .requestMatchers("/api/rides", "/api/rides/feed", "/api/rides/search", "/api/rides/upcoming",
+                                 "/api/rides/snapshot", "/api/rides/changes", "/api/rides/nearby").permitAll()
                 .requestMatchers("/api/rides/**").authenticated()
                 .requestMatchers("/api/chat/**").permitAll()
                 .anyRequest().authenticated()
@@ -0,0 +1,64 @@
+package com.viola.server_side.service;
+
+import com.viola.server_side.dto.ChatMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Delivers a chat message to its participants only: the sender's and receiver's sessions, via
+ * {@code /user/queue/private} on every node. A participant appearing twice (sender and receiver,
+ * or one user with several tabs) gets one send, and the broker fans it out to that user's sessions.
+ *
+ * <p>{@code viola.chat.fanout.sessions} counts the local sessions each message actually reached,
+ * per destination; compare it with {@code viola.websocket.registry.sessions}, which every message reached
+ * when chat was broadcast on {@code /topic/public}.
+ */
+@Slf4j
+@Service
+public class ChatMessageRouter {
+
+    public static final String PRIVATE_QUEUE = "/queue/private";
+    private static final String PRIVATE_DESTINATION = "/user" + PRIVATE_QUEUE;
+
+    private final ClusterMessagingService clusterMessagingService;
+    private final StompSessionRegistry sessionRegistry;
+    private final Counter recipientSends;
+    private final Counter sessionDeliveries;
+    private final Counter deduplicated;
+
+    public ChatMessageRouter(ClusterMessagingService clusterMessagingService,
+                             StompSessionRegistry sessionRegistry,
+                             MeterRegistry meterRegistry) {
+        this.clusterMessagingService = clusterMessagingService;
+        this.sessionRegistry = sessionRegistry;
+        this.recipientSends = Counter.builder("viola.chat.fanout.recipients")
+                .tag("destination", PRIVATE_DESTINATION).register(meterRegistry);
+        this.sessionDeliveries = Counter.builder("viola.chat.fanout.sessions")
+                .tag("destination", PRIVATE_DESTINATION).register(meterRegistry);
+        this.deduplicated = Counter.builder("viola.chat.fanout.deduplicated").register(meterRegistry);
+    }
+
+    public void route(ChatMessage message, Long senderId, Long receiverId) {
+        Set<String> recipients = new LinkedHashSet<>();
+        if (senderId != null) {
+            recipients.add(senderId.toString());
+        }
+        if (receiverId != null && !recipients.add(receiverId.toString())) {
+            deduplicated.increment();
+        }
+        for (String recipient : recipients) {
+            try {
+                clusterMessagingService.convertAndSendToUser(recipient, PRIVATE_QUEUE, message);
+                recipientSends.increment();
+                sessionDeliveries.increment(sessionRegistry.countSubscribedSessions(recipient, PRIVATE_DESTINATION));
+            } catch (Exception e) {
+                log.error("Error delivering message {} to user {}: {}", message.getId(), recipient, e.getMessage(), e);
+            }
+        }
+    }
+}
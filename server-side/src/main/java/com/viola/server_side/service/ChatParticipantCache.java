@@ -0,0 +1,119 @@
+package com.viola.server_side.service;
+
+import com.viola.server_side.repository.ConversationSummaryRepository;
+import com.viola.server_side.repository.RideRepository;
+import com.viola.server_side.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which user ids exist, who owns each ride and who has chatted in it, so the chat send
+ * path and STOMP subscriptions can be validated without loading entities. Only positive answers
+ * are cached: users are never deleted, a ride's owner never changes and participants only join,
+ * so entries stay valid until the ride is deleted on any node ({@link RideDeletedEvent}). Each map is cleared
+ * when it outgrows its bound.
+ */
+@Component
+public class ChatParticipantCache {
+
+    private final UserRepository userRepository;
+    private final RideRepository rideRepository;
+    private final ConversationSummaryRepository conversationSummaryRepository;
+    private final int maxSize;
+    private final Set<Long> knownUserIds = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Long> rideOwnerIds = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> rideParticipants = new ConcurrentHashMap<>();
+
+    public ChatParticipantCache(UserRepository userRepository,
+                                RideRepository rideRepository,
+                                ConversationSummaryRepository conversationSummaryRepository,
+                                @Value("${app.chat.participant-cache.max-size:50000}") int maxSize) {
+        this.userRepository = userRepository;
+        this.rideRepository = rideRepository;
+        this.conversationSummaryRepository = conversationSummaryRepository;
+        this.maxSize = maxSize;
+    }
+
+    public boolean userExists(Long userId) {
+        if (knownUserIds.contains(userId)) {
+            return true;
+        }
+        if (!userRepository.existsById(userId)) {
+            return false;
+        }
+        if (knownUserIds.size() >= maxSize) {
+            knownUserIds.clear();
+        }
+        knownUserIds.add(userId);
+        return true;
+    }
+
+    /** Owner of the ride, or empty when the ride does not exist or is being purged. */
+    public Optional<Long> findRideOwnerId(Long rideId) {
+        Long ownerId = rideOwnerIds.get(rideId);
+        if (ownerId != null) {
+            return Optional.of(ownerId);
+        }
+        Optional<Long> loaded = rideRepository.findOwnerIdById(rideId);
+        loaded.ifPresent(id -> {
+            if (rideOwnerIds.size() >= maxSize) {
+                rideOwnerIds.clear();
+            }
+            rideOwnerIds.put(rideId, id);
+        });
+        return loaded;
+    }
+
+    /**
+     * Whether the user owns the ride or has chatted in it. A cached participant set answers without
+     * a query; a user missing from it is looked up again, since they may have joined on another node.
+     */
+    public boolean isRideParticipant(Long rideId, Long userId) {
+        Optional<Long> ownerId = findRideOwnerId(rideId);
+        if (ownerId.isEmpty()) {
+            return false;
+        }
+        if (ownerId.get().equals(userId)) {
+            return true;
+        }
+        Set<Long> participants = rideParticipants.get(rideId);
+        if (participants != null && participants.contains(userId)) {
+            return true;
+        }
+        Set<Long> loaded = ConcurrentHashMap.newKeySet();
+        loaded.addAll(conversationSummaryRepository.findUserIdsByRideId(rideId));
+        if (rideParticipants.size() >= maxSize) {
+            rideParticipants.clear();
+        }
+        rideParticipants.merge(rideId, loaded, (current, fresh) -> {
+            current.addAll(fresh);
+            return current;
+        });
+        return loaded.contains(userId);
+    }
+
+    /**
+     * Records a message exchange so both users pass {@link #isRideParticipant} before the write-behind
+     * summary rows exist. A set started here is partial; misses still fall through to the database.
+     */
+    public void addRideParticipants(Long rideId, Long senderId, Long receiverId) {
+        if (rideParticipants.size() >= maxSize && !rideParticipants.containsKey(rideId)) {
+            rideParticipants.clear();
+        }
+        Set<Long> participants = rideParticipants.computeIfAbsent(rideId, id -> ConcurrentHashMap.newKeySet());
+        participants.add(senderId);
+        participants.add(receiverId);
+    }
+
+    @EventListener
+    public void onRideDeleted(RideDeletedEvent event) {
+        rideOwnerIds.remove(event.rideId());
+        rideParticipants.remove(event.rideId());
+    }
+}
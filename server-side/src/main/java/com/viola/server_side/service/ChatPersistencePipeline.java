@@ -0,0 +1,251 @@
+package com.viola.server_side.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Write-behind persistence for chat messages. Messages arrive with their id already assigned,
+ * are queued in a bounded buffer and written by a single writer thread in JDBC batches, together
+ * with the matching {@code conversation_summary} updates.
+ *
+ * <p>Durability is set by {@code app.chat.persistence.mode}:
+ * <ul>
+ *   <li>{@code SYNC} - the caller inserts the message itself before returning (no queue)</li>
+ *   <li>{@code GROUP_COMMIT} - the caller waits until the batch holding its message is committed, at
+ *   most {@code commit-timeout-ms}; past that the message is treated as accepted and is still written
+ *   by the queue. The wait holds a STOMP inbound thread and delays the broadcast</li>
+ *   <li>{@code ASYNC} (the default) - the caller returns once the message is queued, so the message
+ *   is broadcast at once; a crash can lose queued messages</li>
+ * </ul>
+ * When the queue stays full past the enqueue timeout the caller writes its own message,
+ * which throttles senders to the database's pace instead of dropping messages.
+ */
+@Slf4j
+@Component
+public class ChatPersistencePipeline {
+
+    public enum Mode { SYNC, GROUP_COMMIT, ASYNC }
+
+    private static final String INSERT_SQL =
+            "INSERT INTO messages (id, content, sender_id, receiver_id, ride_id, is_read, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, false, ?)";
+
+    public record PendingMessage(long id, String content, long senderId, long receiverId, Long rideId,
+                                 LocalDateTime createdAt, CompletableFuture<Void> persisted) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ConversationSummaryWriter summaryWriter;
+    private final Mode mode;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long enqueueTimeoutMs;
+    private final long commitTimeoutMs;
+    private final BlockingQueue<PendingMessage> queue;
+    private final Thread writer;
+
+    private final Timer flushTimer;
+    private final DistributionSummary batchSizes;
+    private final Counter persisted;
+    private final Counter failed;
+    private final Counter callerRuns;
+    private final Counter commitTimeouts;
+
+    private volatile boolean running = true;
+
+    public ChatPersistencePipeline(JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   ConversationSummaryWriter summaryWriter,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.chat.persistence.mode:ASYNC}") Mode mode,
+                                   @Value("${app.chat.persistence.queue-capacity:10000}") int queueCapacity,
+                                   @Value("${app.chat.persistence.batch-size:200}") int batchSize,
+                                   @Value("${app.chat.persistence.flush-interval-ms:20}") long flushIntervalMs,
+                                   @Value("${app.chat.persistence.enqueue-timeout-ms:50}") long enqueueTimeoutMs,
+                                   @Value("${app.chat.persistence.commit-timeout-ms:5000}") long commitTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.summaryWriter = summaryWriter;
+        this.mode = mode;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.enqueueTimeoutMs = enqueueTimeoutMs;
+        this.commitTimeoutMs = commitTimeoutMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.flushTimer = Timer.builder("viola.chat.persistence.flush").register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("viola.chat.persistence.batch.size").register(meterRegistry);
+        this.persisted = Counter.builder("viola.chat.persistence.messages").tag("result", "persisted").register(meterRegistry);
+        this.failed = Counter.builder("viola.chat.persistence.messages").tag("result", "failed").register(meterRegistry);
+        this.callerRuns = Counter.builder("viola.chat.persistence.caller.runs").register(meterRegistry);
+        this.commitTimeouts = Counter.builder("viola.chat.persistence.commit.timeouts").register(meterRegistry);
+        Gauge.builder("viola.chat.persistence.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+
+        this.writer = new Thread(this::runWriter, "chat-persistence-writer");
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (mode != Mode.SYNC) {
+            writer.start();
+        }
+    }
+
+    /**
+     * Persists the message according to the configured durability mode. Throws when the message
+     * failed to persist; returns normally once it is committed or, in {@code ASYNC} mode or after a
+     * {@code GROUP_COMMIT} wait times out, once it is queued.
+     */
+    public void submit(PendingMessage message) {
+        if (mode == Mode.SYNC) {
+            write(List.of(message));
+            awaitPersisted(message);
+            return;
+        }
+        boolean queued;
+        try {
+            queued = running && queue.offer(message, enqueueTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            callerRuns.increment();
+            write(List.of(message));
+            awaitPersisted(message);
+            return;
+        }
+        if (mode == Mode.GROUP_COMMIT) {
+            awaitCommit(message);
+        }
+    }
+
+    private void awaitCommit(PendingMessage message) {
+        try {
+            message.persisted().get(commitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // The message stays queued and will still be written; failing the send now would drop a
+            // message that later lands in the chat history
+            commitTimeouts.increment();
+            log.warn("Message {} not committed within {} ms; accepting it as queued", message.id(), commitTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while persisting message", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to persist message", e.getCause());
+        }
+    }
+
+    /** Rethrows the failure of a message written on the caller's thread. */
+    private static void awaitPersisted(PendingMessage message) {
+        try {
+            message.persisted().join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Failed to persist message", e.getCause());
+        }
+    }
+
+    private void runWriter() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                // Shutdown: keep draining until the queue is empty
+            } catch (Exception e) {
+                log.error("Chat persistence writer error: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingMessage> batch) {
+        flushTimer.record(() -> {
+            try {
+                // One transaction per batch: a single commit covers every message and its conversation summaries
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), ChatPersistencePipeline::bind);
+                    summaryWriter.apply(batch);
+                });
+                batch.forEach(message -> message.persisted().complete(null));
+                persisted.increment(batch.size());
+            } catch (Exception batchFailure) {
+                // Isolate the bad rows (e.g. a ride deleted meanwhile) so the rest of the batch still lands
+                for (PendingMessage message : batch) {
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> {
+                            jdbcTemplate.update(INSERT_SQL, statement -> bind(statement, message));
+                            summaryWriter.apply(List.of(message));
+                        });
+                        message.persisted().complete(null);
+                        persisted.increment();
+                    } catch (Exception e) {
+                        log.error("Failed to persist message {}: {}", message.id(), e.getMessage());
+                        message.persisted().completeExceptionally(e);
+                        failed.increment();
+                    }
+                }
+            }
+        });
+        batchSizes.record(batch.size());
+    }
+
+    private static void bind(PreparedStatement statement, PendingMessage message) throws SQLException {
+        statement.setLong(1, message.id());
+        statement.setString(2, message.content());
+        statement.setLong(3, message.senderId());
+        statement.setLong(4, message.receiverId());
+        if (message.rideId() != null) {
+            statement.setLong(5, message.rideId());
+        } else {
+            statement.setNull(5, Types.BIGINT);
+        }
+        statement.setTimestamp(6, Timestamp.valueOf(message.createdAt()));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (writer.isAlive()) {
+            writer.interrupt();
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        if (!queue.isEmpty()) {
+            log.warn("Chat persistence stopped with {} unwritten messages", queue.size());
+        }
+    }
+}
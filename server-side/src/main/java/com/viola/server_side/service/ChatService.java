@@ -2,20 +2,29 @@ package com.viola.server_side.service;
 
 import com.viola.server_side.dto.ChatMessage;
 import com.viola.server_side.dto.MessageDto;
+import com.viola.server_side.dto.MessagePageDto;
+import com.viola.server_side.entity.ConversationSummary;
 import com.viola.server_side.entity.Message;
 import com.viola.server_side.entity.User;
-import com.viola.server_side.entity.Ride;
+import com.viola.server_side.repository.ConversationSummaryRepository;
 import com.viola.server_side.repository.MessageRepository;
+import com.viola.server_side.repository.ReadWatermarkRepository;
 import com.viola.server_side.repository.UserRepository;
 import com.viola.server_side.repository.RideRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,50 +35,86 @@ public class ChatService {
     private final MessageRepository messageRepository;
     private final UserRepository userRepository;
     private final RideRepository rideRepository;
+    private final MessageIdAllocator messageIdAllocator;
+    private final ChatPersistencePipeline persistencePipeline;
+    private final ChatParticipantCache participantCache;
+    private final ConversationSummaryRepository conversationSummaryRepository;
+    private final ReadWatermarkRepository readWatermarkRepository;
+    private final RecentMessageCache recentMessageCache;
+    private final UnreadCounterService unreadCounterService;
 
+    @Value("${app.chat.history.default-page-size:50}")
+    private int defaultHistoryPageSize;
+
+    @Value("${app.chat.history.max-page-size:200}")
+    private int maxHistoryPageSize;
+
+    /**
+     * Validates the message, assigns its id and timestamp, and hands it to the persistence pipeline.
+     * In the default {@code ASYNC} mode it returns once the message is queued, so the caller can
+     * broadcast it at once. {@code GROUP_COMMIT} blocks the caller until the message's batch is
+     * committed, for at most {@code app.chat.persistence.commit-timeout-ms}. A returned message has
+     * been accepted and should be broadcast; a message that failed to persist throws instead.
+     */
     public MessageDto saveMessage(ChatMessage chatMessage) {
         try {
-            // Find sender and receiver
-            User sender = userRepository.findById(Long.parseLong(chatMessage.getSenderId()))
-                    .orElseThrow(() -> new RuntimeException("Sender not found"));
+            // Validate ids against the participant cache; the message only needs references, not loaded entities
+            Long senderId = Long.parseLong(chatMessage.getSenderId());
+            if (!participantCache.userExists(senderId)) {
+                throw new RuntimeException("Sender not found");
+            }
             
-            // Find ride first
-            Ride ride = rideRepository.findById(chatMessage.getRideId())
+            Long rideId = chatMessage.getRideId();
+            Long rideOwnerId = participantCache.findRideOwnerId(rideId)
                     .orElseThrow(() -> new RuntimeException("Ride not found"));
             
-            User receiver = null;
+            Long receiverId;
             if (chatMessage.getReceiverId() != null && !chatMessage.getReceiverId().isEmpty()) {
-                receiver = userRepository.findById(Long.parseLong(chatMessage.getReceiverId()))
-                        .orElseThrow(() -> new RuntimeException("Receiver not found"));
+                receiverId = Long.parseLong(chatMessage.getReceiverId());
+                if (!participantCache.userExists(receiverId)) {
+                    throw new RuntimeException("Receiver not found");
+                }
             } else {
                 // If no specific receiver, set it to the ride owner (for ride-based chat)
-                receiver = ride.getOwner();
+                receiverId = rideOwnerId;
             }
 
             // Prevent self-chatting
-            if (sender.getId().equals(receiver.getId())) {
+            if (senderId.equals(receiverId)) {
                 throw new RuntimeException("Cannot send message to yourself");
             }
 
-            // Create and save message with UTC timestamp
+            // Create message with a pre-assigned id and UTC timestamp
             Message message = new Message();
+            message.setId(messageIdAllocator.nextId());
             message.setContent(chatMessage.getContent());
-            message.setSender(sender);
-            message.setReceiver(receiver);
-            message.setRide(ride);
+            message.setSender(userRepository.getReferenceById(senderId));
+            message.setReceiver(userRepository.getReferenceById(receiverId));
+            message.setRide(rideRepository.getReferenceById(rideId));
             message.setIsRead(false);
             // Use UTC time to ensure consistency across different server locations
             message.setCreatedAt(LocalDateTime.now(ZoneOffset.UTC));
 
-            Message savedMessage = messageRepository.save(message);
-            log.info("Saved message: {} from {} to {}", savedMessage.getId(), sender.getId(), receiver.getId());
+            // Snapshot the receiver's unread counts before this message can reach the summary
+            unreadCounterService.preload(receiverId);
+            CompletableFuture<Void> persisted = new CompletableFuture<>();
+            persistencePipeline.submit(new ChatPersistencePipeline.PendingMessage(
+                    message.getId(), message.getContent(), senderId, receiverId, rideId,
+                    message.getCreatedAt(), persisted));
+            log.info("Accepted message: {} from {} to {}", message.getId(), senderId, receiverId);
             
-            // Convert to DTO and set both timestamp fields for consistency
-            MessageDto dto = convertToDto(savedMessage);
+            // Build the DTO from ids only so the uninitialized references are never loaded
+            MessageDto dto = convertToReferenceDto(message);
             
-            // Update the original ChatMessage with the saved timestamp for WebSocket broadcasting
-            chatMessage.setTimestamp(savedMessage.getCreatedAt());
-            chatMessage.setCreatedAt(savedMessage.getCreatedAt());
+            // Buffer the message once committed, so a buffer seeded from the database meanwhile cannot miss it
+            persisted.thenRun(() -> recentMessageCache.append(dto));
+            participantCache.addRideParticipants(rideId, senderId, receiverId);
+            
+            // Update the original ChatMessage with the assigned id and time for WebSocket delivery;
+            // createdAt supersedes the client's timestamp, which is dropped from the frame
+            chatMessage.setId(message.getId());
+            chatMessage.setTimestamp(null);
+            chatMessage.setCreatedAt(message.getCreatedAt());
             
             return dto;
         } catch (Exception e) {
@@ -85,6 +130,51 @@ public class ChatService {
                 .collect(Collectors.toList());
     }
 
+    public List<MessageDto> getRideChatHistory(Long rideId, Long userId) {
+        // The full history can come from the cache only while the ride's chat fits in its buffer
+        int capacity = recentMessageCache.capacity();
+        return recentMessageCache.findPage(rideId, userId, null, capacity, () -> loadNewestMessages(rideId, capacity))
+                .filter(page -> !page.getHasMore())
+                .map(MessagePageDto::getMessages)
+                .orElseGet(() -> messageRepository.findRideHistoryForParticipant(rideId, userId).stream()
+                        .map(this::convertToDto)
+                        .collect(Collectors.toList()));
+    }
+
+    /** One page of the caller's ride chat, older than {@code beforeId} when given, returned oldest first. */
+    public MessagePageDto getRideChatPage(Long rideId, Long userId, Long beforeId, Integer limit) {
+        int pageSize = limit == null ? defaultHistoryPageSize : Math.max(1, Math.min(limit, maxHistoryPageSize));
+        // Fetch one extra row to learn whether older messages exist without a COUNT query
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+        
+        if (pageSize < recentMessageCache.capacity()) {
+            int capacity = recentMessageCache.capacity();
+            Optional<MessagePageDto> cached = recentMessageCache.findPage(rideId, userId, beforeId, pageSize,
+                    () -> loadNewestMessages(rideId, capacity));
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+        }
+        
+        List<Message> messages = beforeId == null
+                ? messageRepository.findRideHistoryPage(rideId, userId, pageRequest)
+                : messageRepository.findRideHistoryPageBefore(rideId, userId, beforeId, pageRequest);
+        
+        boolean hasMore = messages.size() > pageSize;
+        List<MessageDto> page = new ArrayList<>(hasMore ? pageSize : messages.size());
+        for (int i = Math.min(messages.size(), pageSize) - 1; i >= 0; i--) {
+            page.add(convertToDto(messages.get(i)));
+        }
+        Long nextBefore = hasMore ? page.get(0).getId() : null;
+        return new MessagePageDto(page, nextBefore, hasMore);
+    }
+
+    private List<MessageDto> loadNewestMessages(Long rideId, int limit) {
+        return messageRepository.findNewestByRideId(rideId, PageRequest.of(0, limit)).stream()
+                .map(this::convertToDto)
+                .collect(Collectors.toList());
+    }
+
     public List<Message> getMessagesByUserId(Long userId) {
         return messageRepository.findMessagesBySenderId(userId);
     }
@@ -96,16 +186,29 @@ public class ChatService {
                 .collect(Collectors.toList());
     }
 
+    /** Conversation summary rows for the user (one per ride and partner), newest first. */
+    public List<ConversationSummary> getConversationSummaries(Long userId) {
+        return conversationSummaryRepository.findInbox(userId);
+    }
+
+    /** Moves the user's read watermark for the ride to its newest message and clears the summary's unread count. */
+    @Transactional
+    public void markRideAsRead(Long userId, Long rideId) {
+        readWatermarkRepository.markRideRead(userId, rideId);
+        conversationSummaryRepository.markRideRead(userId, rideId);
+    }
+
     public List<MessageDto> getConversationBetweenUsers(String userId) {
         // This would need to be implemented based on your chat logic
         // For now, return empty list
         return List.of();
     }
 
-    public List<MessageDto> getUnreadMessagesForUser() {
-        // This would need to be implemented based on your chat logic
-        // For now, return empty list
-        return List.of();
+    /** Ride chat messages the user received after their read watermark for each ride, newest first. */
+    public List<MessageDto> getUnreadMessagesForUser(Long userId) {
+        return messageRepository.findUnreadMessagesForUser(userId).stream()
+                .map(this::convertToDto)
+                .toList();
     }
 
     private MessageDto convertToDto(Message message) {
@@ -127,6 +230,25 @@ public class ChatService {
         return dto;
     }
 
+    private MessageDto convertToReferenceDto(Message message) {
+        MessageDto dto = new MessageDto();
+        dto.setId(message.getId());
+        dto.setContent(message.getContent());
+        dto.setCreatedAt(message.getCreatedAt());
+        dto.setIsRead(message.getIsRead());
+        dto.setRideId(message.getRide().getId());
+        
+        com.viola.server_side.dto.UserDto sender = new com.viola.server_side.dto.UserDto();
+        sender.setId(message.getSender().getId());
+        dto.setSender(sender);
+        
+        com.viola.server_side.dto.UserDto receiver = new com.viola.server_side.dto.UserDto();
+        receiver.setId(message.getReceiver().getId());
+        dto.setReceiver(receiver);
+        
+        return dto;
+    }
+
     private com.viola.server_side.dto.UserDto convertUserToDto(User user) {
         com.viola.server_side.dto.UserDto dto = new com.viola.server_side.dto.UserDto();
         dto.setId(user.getId());
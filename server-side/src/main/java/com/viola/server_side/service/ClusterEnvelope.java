@@ -0,0 +1,14 @@
+package com.viola.server_side.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * A STOMP delivery relayed between nodes: a broadcast to {@code destination} when {@code user} is
+ * null, otherwise a user-destination send. {@code origin} is the publishing node's id;
+ * {@code coalesceKey} is the optional {@code coalesce-key} header of the delivery. When {@code event}
+ * is set the envelope instead carries an application event relayed by {@link ClusterEventRelay}:
+ * {@code event} names its type and {@code payload} holds it.
+ */
+public record ClusterEnvelope(String origin, String user, String destination, JsonNode payload, String coalesceKey,
+                              String event) {
+}
@@ -0,0 +1,106 @@
+package com.viola.server_side.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Publishes application events that invalidate node-local state (the ride catalog, ETag versions and
+ * chat caches) on every node. An event is published to this node's listeners and relayed through the
+ * {@link ClusterFanout}; other nodes publish it to their own listeners, so a listener runs once per
+ * node whichever node made the change. Only the event types listed here are accepted from the fan-out.
+ * Delivery is at most once, like the fan-out itself. An event published inside a transaction is held
+ * until it commits, so no node drops state for a change that may still roll back, or reloads it
+ * from rows the change has not committed yet.
+ */
+@Slf4j
+@Service
+public class ClusterEventRelay {
+
+    private static final Map<String, Class<?>> RELAYED_EVENTS = List.of(
+            RideChangedEvent.class,
+            RideDeletedEvent.class,
+            RidesExpiredEvent.class,
+            UserProfileChangedEvent.class
+    ).stream().collect(Collectors.toMap(Class::getSimpleName, Function.identity()));
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final ClusterFanout clusterFanout;
+    private final ObjectMapper objectMapper;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public ClusterEventRelay(ApplicationEventPublisher eventPublisher,
+                             ClusterFanout clusterFanout,
+                             ObjectMapper objectMapper) {
+        this.eventPublisher = eventPublisher;
+        this.clusterFanout = clusterFanout;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        clusterFanout.subscribe(this::receive);
+    }
+
+    /** Held back by {@link #publish} until the surrounding transaction commits. */
+    record PendingEvent(Object event) {
+    }
+
+    /**
+     * Publishes the event to this node's listeners, then to every other node's; inside a transaction,
+     * once it has committed.
+     */
+    public void publish(Object event) {
+        String type = event.getClass().getSimpleName();
+        if (!RELAYED_EVENTS.containsKey(type)) {
+            throw new IllegalArgumentException("Not a relayed event: " + type);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            eventPublisher.publishEvent(new PendingEvent(event));
+        } else {
+            relay(event, type);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void publishCommitted(PendingEvent pending) {
+        relay(pending.event(), pending.event().getClass().getSimpleName());
+    }
+
+    private void relay(Object event, String type) {
+        eventPublisher.publishEvent(event);
+        try {
+            clusterFanout.publish(new ClusterEnvelope(nodeId, null, null, objectMapper.valueToTree(event), null, type));
+        } catch (Exception e) {
+            // Local listeners already ran; other nodes keep stale state until the next change
+            log.error("Error relaying {} to other nodes: {}", type, e.getMessage());
+        }
+    }
+
+    private void receive(ClusterEnvelope envelope) {
+        if (envelope.event() == null || nodeId.equals(envelope.origin())) {
+            return;
+        }
+        Class<?> type = RELAYED_EVENTS.get(envelope.event());
+        if (type == null) {
+            log.warn("Ignoring unknown relayed event {}", envelope.event());
+            return;
+        }
+        try {
+            eventPublisher.publishEvent(objectMapper.treeToValue(envelope.payload(), type));
+        } catch (Exception e) {
+            log.error("Error applying relayed {}: {}", envelope.event(), e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.viola.server_side.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Transport that carries {@link ClusterEnvelope}s to every node, including the publisher.
+ * Selected with {@code app.cluster.fanout}: {@code local} (single node, the default) or
+ * {@code postgres} (LISTEN/NOTIFY on the application database).
+ *
+ * <p>With several nodes, STOMP deliveries go through {@link ClusterMessagingService} and ride and
+ * profile changes through {@link ClusterEventRelay}, which keeps each node's ride catalog, ride feed
+ * and chat participant cache in step. Ride ETags come from a version shared through the database
+ * ({@link RideVersionTracker}). The recent-message cache and the cached unread counts are switched
+ * off. What stays node-local:
+ * <ul>
+ *   <li>STOMP sessions, their subscriptions and outbound buffers</li>
+ *   <li>ride feed sequence numbers; a client resuming on another node reloads the snapshot</li>
+ *   <li>chat messages queued by the persistence pipeline but not yet committed</li>
+ * </ul>
+ * Envelopes are delivered at most once: state missed while a node reconnects stays stale until the
+ * next change to the same ride or user.
+ */
+public interface ClusterFanout {
+
+    void publish(ClusterEnvelope envelope);
+
+    void subscribe(Consumer<ClusterEnvelope> handler);
+}
@@ -0,0 +1,95 @@
+package com.viola.server_side.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Sends STOMP messages to sessions on every node. Deliveries go to the local simple broker
+ * directly and are published through the {@link ClusterFanout}; envelopes arriving from other
+ * nodes are replayed into the local broker. Envelopes this node published are skipped on receipt.
+ * User deliveries are skipped on nodes where the {@link StompSessionRegistry} has no session for the user.
+ */
+@Slf4j
+@Service
+public class ClusterMessagingService {
+
+    public static final String COALESCE_KEY_HEADER = "coalesce-key";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ClusterFanout clusterFanout;
+    private final ObjectMapper objectMapper;
+    private final StompSessionRegistry sessionRegistry;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public ClusterMessagingService(SimpMessagingTemplate messagingTemplate,
+                                   ClusterFanout clusterFanout,
+                                   ObjectMapper objectMapper,
+                                   StompSessionRegistry sessionRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.clusterFanout = clusterFanout;
+        this.objectMapper = objectMapper;
+        this.sessionRegistry = sessionRegistry;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        clusterFanout.subscribe(this::deliverRemote);
+    }
+
+    /** Broadcasts to a topic such as {@code /topic/ride.42} on every node. */
+    public void convertAndSend(String destination, Object payload) {
+        messagingTemplate.convertAndSend(destination, payload);
+        publish(null, destination, payload, null);
+    }
+
+    /** Sends to a user destination such as {@code /queue/unread} on whichever nodes hold the user's sessions. */
+    public void convertAndSendToUser(String user, String destination, Object payload) {
+        convertAndSendToUser(user, destination, payload, null);
+    }
+
+    /**
+     * Like {@link #convertAndSendToUser(String, String, Object)}, marking the frame with a
+     * {@value #COALESCE_KEY_HEADER} header: a newer frame with the same key supersedes one still
+     * queued for a slow session.
+     */
+    public void convertAndSendToUser(String user, String destination, Object payload, String coalesceKey) {
+        if (sessionRegistry.hasSessions(user)) {
+            messagingTemplate.convertAndSendToUser(user, destination, payload, coalesceHeaders(coalesceKey));
+        }
+        publish(user, destination, payload, coalesceKey);
+    }
+
+    private static Map<String, Object> coalesceHeaders(String coalesceKey) {
+        return coalesceKey != null ? Map.of(COALESCE_KEY_HEADER, coalesceKey) : null;
+    }
+
+    private void publish(String user, String destination, Object payload, String coalesceKey) {
+        try {
+            clusterFanout.publish(new ClusterEnvelope(nodeId, user, destination, objectMapper.valueToTree(payload), coalesceKey, null));
+        } catch (Exception e) {
+            // Local delivery already happened; remote nodes miss this one
+            log.error("Error relaying {} to other nodes: {}", destination, e.getMessage());
+        }
+    }
+
+    private void deliverRemote(ClusterEnvelope envelope) {
+        if (nodeId.equals(envelope.origin()) || envelope.event() != null) {
+            return;
+        }
+        if (envelope.user() != null) {
+            if (!sessionRegistry.hasSessions(envelope.user())) {
+                return;
+            }
+            messagingTemplate.convertAndSendToUser(envelope.user(), envelope.destination(), envelope.payload(),
+                    coalesceHeaders(envelope.coalesceKey()));
+        } else {
+            messagingTemplate.convertAndSend(envelope.destination(), envelope.payload());
+        }
+    }
+}
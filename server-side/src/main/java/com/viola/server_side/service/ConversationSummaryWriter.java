@@ -0,0 +1,78 @@
+package com.viola.server_side.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Folds newly persisted messages into {@code conversation_summary}. Each message upserts the
+ * sender's row (no unread change) and the receiver's row (one more unread). The latest message
+ * only replaces the stored one when it is not older, so batches from different nodes can land in
+ * any order; unread counts are additive. Must run inside the transaction that inserts the messages.
+ */
+@Component
+public class ConversationSummaryWriter {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO conversation_summary (id, user_id, partner_id, ride_id, last_message_id, last_message, " +
+            "last_sender_id, last_message_at, unread_count) " +
+            "VALUES (nextval('conversation_summary_seq'), ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (user_id, ride_id, partner_id) DO UPDATE SET " +
+            "last_message_id = CASE WHEN EXCLUDED.last_message_at >= conversation_summary.last_message_at " +
+            "THEN EXCLUDED.last_message_id ELSE conversation_summary.last_message_id END, " +
+            "last_message = CASE WHEN EXCLUDED.last_message_at >= conversation_summary.last_message_at " +
+            "THEN EXCLUDED.last_message ELSE conversation_summary.last_message END, " +
+            "last_sender_id = CASE WHEN EXCLUDED.last_message_at >= conversation_summary.last_message_at " +
+            "THEN EXCLUDED.last_sender_id ELSE conversation_summary.last_sender_id END, " +
+            "last_message_at = GREATEST(EXCLUDED.last_message_at, conversation_summary.last_message_at), " +
+            "unread_count = conversation_summary.unread_count + EXCLUDED.unread_count";
+
+    private record SummaryUpdate(long userId, long partnerId, long rideId, ChatPersistencePipeline.PendingMessage message,
+                                 int unreadDelta) {
+    }
+
+    // Rows are locked in key order so concurrent writers on other nodes cannot deadlock
+    private static final Comparator<SummaryUpdate> KEY_ORDER = Comparator
+            .comparingLong(SummaryUpdate::userId)
+            .thenComparingLong(SummaryUpdate::rideId)
+            .thenComparingLong(SummaryUpdate::partnerId);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ConversationSummaryWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void apply(List<ChatPersistencePipeline.PendingMessage> messages) {
+        List<SummaryUpdate> updates = new ArrayList<>(messages.size() * 2);
+        for (ChatPersistencePipeline.PendingMessage message : messages) {
+            if (message.rideId() == null) {
+                continue;
+            }
+            updates.add(new SummaryUpdate(message.senderId(), message.receiverId(), message.rideId(), message, 0));
+            updates.add(new SummaryUpdate(message.receiverId(), message.senderId(), message.rideId(), message, 1));
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+        updates.sort(KEY_ORDER);
+        jdbcTemplate.batchUpdate(UPSERT_SQL, updates, updates.size(), ConversationSummaryWriter::bind);
+    }
+
+    private static void bind(PreparedStatement statement, SummaryUpdate update) throws SQLException {
+        statement.setLong(1, update.userId());
+        statement.setLong(2, update.partnerId());
+        statement.setLong(3, update.rideId());
+        statement.setLong(4, update.message().id());
+        statement.setString(5, update.message().content());
+        statement.setLong(6, update.message().senderId());
+        statement.setTimestamp(7, Timestamp.valueOf(update.message().createdAt()));
+        statement.setInt(8, update.unreadDelta());
+    }
+}
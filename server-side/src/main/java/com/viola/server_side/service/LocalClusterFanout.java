@@ -0,0 +1,20 @@
+package com.viola.server_side.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Consumer;
+
+/** Single-node fan-out: local sessions are already served by the in-process broker, so nothing is relayed. */
+@Component
+@ConditionalOnProperty(name = "app.cluster.fanout", havingValue = "local", matchIfMissing = true)
+public class LocalClusterFanout implements ClusterFanout {
+
+    @Override
+    public void publish(ClusterEnvelope envelope) {
+    }
+
+    @Override
+    public void subscribe(Consumer<ClusterEnvelope> handler) {
+    }
+}
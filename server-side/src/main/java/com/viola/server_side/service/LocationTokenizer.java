@@ -0,0 +1,54 @@
+package com.viola.server_side.service;
+
+import java.text.Normalizer;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Normalizes free-form pickup and destination text into comparable tokens:
+ * accents stripped, lower-cased, punctuation removed, and filler words dropped,
+ * so "Near Katpadi Jn." and "katpadi jn" yield the same tokens.
+ */
+public final class LocationTokenizer {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+        "a", "an", "and", "at", "by", "from", "in", "near", "of", "on", "opp", "opposite", "the", "to", "via"
+    );
+
+    private LocationTokenizer() {
+    }
+
+    public static Set<String> tokenize(String location) {
+        if (location == null || location.isBlank()) {
+            return Collections.emptySet();
+        }
+        String normalized = Normalizer.normalize(location, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("[^a-z0-9]+", " ")
+                .trim();
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String token : normalized.split(" ")) {
+            if (!token.isEmpty() && !STOP_WORDS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /** Jaccard similarity of two token sets, 0 when either is empty. */
+    public static double similarity(Set<String> left, Set<String> right) {
+        if (left.isEmpty() || right.isEmpty()) {
+            return 0.0;
+        }
+        int common = 0;
+        for (String token : left) {
+            if (right.contains(token)) {
+                common++;
+            }
+        }
+        return (double) common / (left.size() + right.size() - common);
+    }
+}
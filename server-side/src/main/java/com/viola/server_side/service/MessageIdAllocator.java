@@ -0,0 +1,40 @@
+package com.viola.server_side.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands out message ids ahead of the INSERT so a message can be broadcast before it is persisted.
+ * Uses the same pooled {@code messages_seq} as the {@link com.viola.server_side.entity.Message}
+ * entity: each nextval reserves the block (value - {@link #BLOCK_SIZE}, value], the block Hibernate's
+ * pooled optimizer takes for the same value, so ids handed out here never collide with ids Hibernate
+ * assigns. Hibernate treats the sequence's start value specially (it takes a second nextval and hands
+ * out both blocks), so the allocator refuses values below one block; {@code db/pooled-id-sequences.sql}
+ * moves the sequence past them before the application starts.
+ */
+@Component
+@RequiredArgsConstructor
+public class MessageIdAllocator {
+
+    // Must match the sequence INCREMENT BY and the entity's allocationSize
+    static final int BLOCK_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private long next;
+    private long blockEnd;
+
+    public synchronized long nextId() {
+        if (next == 0 || next > blockEnd) {
+            long hi = jdbcTemplate.queryForObject("SELECT nextval('messages_seq')", Long.class);
+            if (hi < BLOCK_SIZE) {
+                throw new IllegalStateException("messages_seq returned " + hi
+                        + "; it must be moved past its start value by db/pooled-id-sequences.sql");
+            }
+            blockEnd = hi;
+            next = hi - BLOCK_SIZE + 1;
+        }
+        return next++;
+    }
+}
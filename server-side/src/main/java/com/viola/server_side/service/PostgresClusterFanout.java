@@ -0,0 +1,200 @@
+package com.viola.server_side.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Relays envelopes between nodes with PostgreSQL LISTEN/NOTIFY on the application database.
+ * Each node holds one dedicated listening connection (outside the pool) and publishes with
+ * {@code pg_notify} on a pooled connection. NOTIFY payloads are limited to 8000 bytes, so larger
+ * envelopes are stored in the unlogged {@code cluster_fanout_payloads} table and only their id
+ * is notified; those rows are deleted after {@code payload-retention-seconds}.
+ *
+ * <p>Delivery is at most once: notifications sent while a node is reconnecting are lost.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.cluster.fanout", havingValue = "postgres")
+public class PostgresClusterFanout implements ClusterFanout {
+
+    private static final int MAX_INLINE_BYTES = 7900;
+    private static final String STORED_PREFIX = "@";
+    private static final long CLEANUP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final DataSourceProperties dataSourceProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final String channel;
+    private final long payloadRetentionSeconds;
+    private final List<Consumer<ClusterEnvelope>> handlers = new CopyOnWriteArrayList<>();
+    private final Thread listener;
+
+    private final Counter published;
+    private final Counter received;
+    private final Counter stored;
+    private final Counter reconnects;
+
+    private volatile boolean running = true;
+    private volatile boolean listening = false;
+
+    public PostgresClusterFanout(DataSourceProperties dataSourceProperties,
+                                 JdbcTemplate jdbcTemplate,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.cluster.postgres.channel:viola_fanout}") String channel,
+                                 @Value("${app.cluster.postgres.payload-retention-seconds:300}") long payloadRetentionSeconds) {
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid fan-out channel name: " + channel);
+        }
+        this.dataSourceProperties = dataSourceProperties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.channel = channel;
+        this.payloadRetentionSeconds = payloadRetentionSeconds;
+        this.published = Counter.builder("viola.cluster.fanout.messages").tag("direction", "published").register(meterRegistry);
+        this.received = Counter.builder("viola.cluster.fanout.messages").tag("direction", "received").register(meterRegistry);
+        this.stored = Counter.builder("viola.cluster.fanout.stored.payloads").register(meterRegistry);
+        this.reconnects = Counter.builder("viola.cluster.fanout.reconnects").register(meterRegistry);
+        this.listener = new Thread(this::listen, "cluster-fanout-listener");
+        this.listener.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        jdbcTemplate.execute("CREATE UNLOGGED TABLE IF NOT EXISTS cluster_fanout_payloads (" +
+                "id BIGSERIAL PRIMARY KEY, payload TEXT NOT NULL, created_at TIMESTAMPTZ NOT NULL DEFAULT now())");
+        listener.start();
+    }
+
+    @Override
+    public void publish(ClusterEnvelope envelope) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(envelope);
+        } catch (Exception e) {
+            log.error("Could not serialize fan-out envelope for {}: {}", envelope.destination(), e.getMessage());
+            return;
+        }
+        String notification = json;
+        if (json.getBytes(StandardCharsets.UTF_8).length > MAX_INLINE_BYTES) {
+            Long id = jdbcTemplate.queryForObject(
+                    "INSERT INTO cluster_fanout_payloads (payload) VALUES (?) RETURNING id", Long.class, json);
+            notification = STORED_PREFIX + id;
+            stored.increment();
+        }
+        jdbcTemplate.queryForObject("SELECT pg_notify(?, ?)", Object.class, channel, notification);
+        published.increment();
+    }
+
+    public boolean isListening() {
+        return listening;
+    }
+
+    @Override
+    public void subscribe(Consumer<ClusterEnvelope> handler) {
+        handlers.add(handler);
+    }
+
+    private void listen() {
+        long lastCleanup = System.nanoTime() - CLEANUP_INTERVAL_NANOS;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                listening = true;
+                log.info("Listening for cluster fan-out on channel {}", channel);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(500);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            dispatch(notification.getParameter());
+                        }
+                    }
+                    if (System.nanoTime() - lastCleanup >= CLEANUP_INTERVAL_NANOS) {
+                        deleteExpiredPayloads();
+                        lastCleanup = System.nanoTime();
+                    }
+                }
+            } catch (SQLException e) {
+                listening = false;
+                if (!running) {
+                    break;
+                }
+                reconnects.increment();
+                log.warn("Cluster fan-out listener lost its connection, reconnecting: {}", e.getMessage());
+                sleepQuietly(TimeUnit.SECONDS.toMillis(2));
+            }
+        }
+    }
+
+    private void dispatch(String notification) {
+        try {
+            String json = notification;
+            if (notification.startsWith(STORED_PREFIX)) {
+                long id = Long.parseLong(notification.substring(STORED_PREFIX.length()));
+                List<String> rows = jdbcTemplate.queryForList(
+                        "SELECT payload FROM cluster_fanout_payloads WHERE id = ?", String.class, id);
+                if (rows.isEmpty()) {
+                    log.warn("Cluster fan-out payload {} expired before it was read", id);
+                    return;
+                }
+                json = rows.get(0);
+            }
+            ClusterEnvelope envelope = objectMapper.readValue(json, ClusterEnvelope.class);
+            received.increment();
+            for (Consumer<ClusterEnvelope> handler : handlers) {
+                handler.accept(envelope);
+            }
+        } catch (Exception e) {
+            log.error("Could not dispatch cluster fan-out notification: {}", e.getMessage(), e);
+        }
+    }
+
+    private void deleteExpiredPayloads() {
+        try {
+            jdbcTemplate.update("DELETE FROM cluster_fanout_payloads WHERE created_at < now() - make_interval(secs => ?)",
+                    payloadRetentionSeconds);
+        } catch (Exception e) {
+            log.warn("Could not delete expired cluster fan-out payloads: {}", e.getMessage());
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        listener.interrupt();
+        listener.join(TimeUnit.SECONDS.toMillis(5));
+    }
+}
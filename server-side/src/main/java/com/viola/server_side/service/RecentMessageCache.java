@@ -0,0 +1,375 @@
+package com.viola.server_side.service;
+
+import com.viola.server_side.dto.MessageDto;
+import com.viola.server_side.dto.MessagePageDto;
+import com.viola.server_side.dto.UserDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Ring buffer of the most recent messages of each recently opened ride chat, so opening a chat
+ * usually skips the database. A ride's buffer is seeded from the database on first read and then
+ * extended by the send path once each message is committed, so a seed query can never miss a message
+ * that was appended before the buffer existed; appends that race with the seed query are queued and
+ * merged in.
+ * Rides are evicted least recently used first, after {@code idle-ttl} without access, and whenever
+ * the estimated size of all buffers exceeds {@code max-bytes}.
+ *
+ * <p>A page is served from a buffer only when the buffer provably holds it: either enough of the
+ * caller's messages precede the cursor, or the buffer still holds the ride's entire history.
+ *
+ * <p>Buffers only see this node's sends, so the cache is disabled unless {@code app.cluster.fanout}
+ * is {@code local}; with several nodes every page comes from the database.
+ */
+@Component
+public class RecentMessageCache {
+
+    private static final Comparator<MessageDto> MESSAGE_ORDER = Comparator
+            .comparing(MessageDto::getCreatedAt)
+            .thenComparing(MessageDto::getId);
+
+    // Rough per-object costs (headers, references, boxed fields) used for the byte estimate
+    private static final long MESSAGE_OVERHEAD_BYTES = 160;
+    private static final long BUFFER_OVERHEAD_BYTES = 256;
+
+    private final int messagesPerRide;
+    private final int maxRides;
+    private final long maxBytes;
+    private final long idleTtlNanos;
+    private final boolean enabled;
+
+    // Access-ordered, so iteration starts at the least recently used ride
+    private final LinkedHashMap<Long, RideBuffer> buffers = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public RecentMessageCache(@Value("${app.chat.recent.messages-per-ride:100}") int messagesPerRide,
+                              @Value("${app.chat.recent.max-rides:10000}") int maxRides,
+                              @Value("${app.chat.recent.max-bytes:67108864}") long maxBytes,
+                              @Value("${app.chat.recent.idle-ttl:PT30M}") Duration idleTtl,
+                              @Value("${app.cluster.fanout:local}") String clusterFanout,
+                              MeterRegistry meterRegistry) {
+        this.messagesPerRide = messagesPerRide;
+        this.maxRides = maxRides;
+        this.maxBytes = maxBytes;
+        this.idleTtlNanos = idleTtl.toNanos();
+        this.enabled = "local".equals(clusterFanout);
+        this.hits = Counter.builder("viola.chat.recent.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("viola.chat.recent.requests").tag("result", "miss").register(meterRegistry);
+        this.evictions = Counter.builder("viola.chat.recent.evictions").register(meterRegistry);
+        Gauge.builder("viola.chat.recent.bytes", this, RecentMessageCache::estimatedBytes).register(meterRegistry);
+        Gauge.builder("viola.chat.recent.rides", this, RecentMessageCache::rideCount).register(meterRegistry);
+    }
+
+    /**
+     * The caller's page of the ride chat (oldest first), or empty when the buffer cannot answer it.
+     * When the ride has no buffer yet, {@code newestMessages} is called to seed one with the ride's
+     * latest messages, newest first, at most {@link #capacity()} of them.
+     */
+    public Optional<MessagePageDto> findPage(Long rideId, Long userId, Long beforeId, int pageSize,
+                                             Supplier<List<MessageDto>> newestMessages) {
+        if (!enabled) {
+            // No buffer is ever created, so appends are dropped as well
+            return Optional.empty();
+        }
+        RideBuffer loading = null;
+        synchronized (this) {
+            RideBuffer buffer = buffers.get(rideId);
+            if (buffer != null && isExpired(buffer)) {
+                remove(rideId);
+                buffer = null;
+            }
+            if (buffer == null) {
+                loading = new RideBuffer(messagesPerRide);
+                buffers.put(rideId, loading);
+                totalBytes += loading.bytes;
+            } else if (buffer.loaded) {
+                buffer.lastAccessNanos = System.nanoTime();
+                return record(buffer.page(userId, beforeId, pageSize));
+            } else {
+                // Another request is seeding this ride; go to the database rather than wait
+                return record(Optional.empty());
+            }
+        }
+
+        List<MessageDto> seed;
+        try {
+            seed = newestMessages.get();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                if (buffers.get(rideId) == loading) {
+                    remove(rideId);
+                }
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            if (buffers.get(rideId) != loading) {
+                // Evicted or invalidated while loading
+                return record(Optional.empty());
+            }
+            long before = loading.bytes;
+            boolean merged = loading.seed(seed);
+            totalBytes += loading.bytes - before;
+            if (!merged) {
+                remove(rideId);
+                return record(Optional.empty());
+            }
+            evictOverflow();
+            if (buffers.get(rideId) != loading) {
+                return record(Optional.empty());
+            }
+            return record(loading.page(userId, beforeId, pageSize));
+        }
+    }
+
+    /**
+     * Adds a just-committed message to its ride's buffer, if the ride has one. The message's sender and
+     * receiver are filled in from participants the buffer already knows; a message from or to a new
+     * participant drops the buffer so the next read reseeds it with full user details.
+     */
+    public synchronized void append(MessageDto message) {
+        RideBuffer buffer = buffers.get(message.getRideId());
+        if (buffer == null) {
+            return;
+        }
+        if (!buffer.loaded) {
+            buffer.pending.add(message);
+            return;
+        }
+        long before = buffer.bytes;
+        if (!buffer.add(message)) {
+            remove(message.getRideId());
+            return;
+        }
+        totalBytes += buffer.bytes - before;
+        evictOverflow();
+    }
+
+    public synchronized void evict(Long rideId) {
+        remove(rideId);
+    }
+
+    public int capacity() {
+        return messagesPerRide;
+    }
+
+    public synchronized long estimatedBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int rideCount() {
+        return buffers.size();
+    }
+
+    @EventListener
+    public void onRideDeleted(RideDeletedEvent event) {
+        evict(event.rideId());
+    }
+
+    @EventListener
+    public synchronized void onUserProfileChanged(UserProfileChangedEvent event) {
+        // Names and photos are copied into every buffered message; profile changes are rare
+        evictions.increment(buffers.size());
+        buffers.clear();
+        totalBytes = 0;
+    }
+
+    private Optional<MessagePageDto> record(Optional<MessagePageDto> page) {
+        (page.isPresent() ? hits : misses).increment();
+        return page;
+    }
+
+    private boolean isExpired(RideBuffer buffer) {
+        return buffer.loaded && System.nanoTime() - buffer.lastAccessNanos > idleTtlNanos;
+    }
+
+    private void remove(Long rideId) {
+        RideBuffer removed = buffers.remove(rideId);
+        if (removed != null) {
+            totalBytes -= removed.bytes;
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<Long, RideBuffer>> eldest = buffers.entrySet().iterator();
+        while (eldest.hasNext() && (totalBytes > maxBytes || buffers.size() > maxRides)) {
+            RideBuffer buffer = eldest.next().getValue();
+            eldest.remove();
+            totalBytes -= buffer.bytes;
+            evictions.increment();
+        }
+        // Idle rides are dropped lazily on access; also sweep the LRU end so they free memory
+        while (eldest.hasNext()) {
+            RideBuffer buffer = eldest.next().getValue();
+            if (!isExpired(buffer)) {
+                break;
+            }
+            eldest.remove();
+            totalBytes -= buffer.bytes;
+            evictions.increment();
+        }
+    }
+
+    private static long estimateBytes(MessageDto message) {
+        String content = message.getContent();
+        return MESSAGE_OVERHEAD_BYTES + (content != null ? 2L * content.length() : 0);
+    }
+
+    private static long estimateBytes(UserDto user) {
+        return MESSAGE_OVERHEAD_BYTES
+                + 2L * (length(user.getEmail()) + length(user.getName()) + length(user.getPhotoUrl()));
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    /** Fixed-capacity ring of one ride's newest messages, kept in (createdAt, id) order. */
+    static final class RideBuffer {
+
+        private final MessageDto[] ring;
+        private final Map<Long, UserDto> participants = new HashMap<>();
+        private final List<MessageDto> pending = new ArrayList<>();
+        private int head;
+        private int size;
+        private boolean loaded;
+        private boolean complete;
+        private long bytes = BUFFER_OVERHEAD_BYTES;
+        private long lastAccessNanos = System.nanoTime();
+
+        RideBuffer(int capacity) {
+            this.ring = new MessageDto[capacity];
+        }
+
+        /** Fills the buffer and merges queued appends; false when a queued append could not be placed. */
+        boolean seed(List<MessageDto> newestFirst) {
+            // Fewer rows than requested means the ride's whole history fits
+            complete = newestFirst.size() < ring.length;
+            for (int i = newestFirst.size() - 1; i >= 0; i--) {
+                MessageDto message = newestFirst.get(i);
+                remember(message.getSender());
+                remember(message.getReceiver());
+                insert(message);
+            }
+            loaded = true;
+            boolean merged = true;
+            for (MessageDto message : pending) {
+                merged &= add(message);
+            }
+            pending.clear();
+            return merged;
+        }
+
+        /** Adds a message carrying only user ids; false when a participant is unknown. */
+        boolean add(MessageDto message) {
+            UserDto sender = participants.get(message.getSender().getId());
+            UserDto receiver = participants.get(message.getReceiver().getId());
+            if (sender == null || receiver == null) {
+                return false;
+            }
+            if (contains(message.getId())) {
+                return true;
+            }
+            insert(new MessageDto(message.getId(), message.getContent(), sender, receiver,
+                    message.getRideId(), message.getIsRead(), message.getCreatedAt()));
+            return true;
+        }
+
+        Optional<MessagePageDto> page(Long userId, Long beforeId, int pageSize) {
+            int end = size;
+            if (beforeId != null) {
+                end = indexOf(beforeId);
+                if (end < 0) {
+                    return Optional.empty();
+                }
+            }
+            // Walk back from the cursor collecting the caller's messages, one extra to learn hasMore
+            List<MessageDto> newestFirst = new ArrayList<>(pageSize + 1);
+            for (int i = end - 1; i >= 0 && newestFirst.size() <= pageSize; i--) {
+                MessageDto message = get(i);
+                if (message.getSender().getId().equals(userId) || message.getReceiver().getId().equals(userId)) {
+                    newestFirst.add(message);
+                }
+            }
+            boolean hasMore = newestFirst.size() > pageSize;
+            if (!hasMore && !complete) {
+                return Optional.empty();
+            }
+            int count = Math.min(newestFirst.size(), pageSize);
+            List<MessageDto> page = new ArrayList<>(count);
+            for (int i = count - 1; i >= 0; i--) {
+                page.add(newestFirst.get(i));
+            }
+            Long nextBefore = hasMore ? page.get(0).getId() : null;
+            return Optional.of(new MessagePageDto(page, nextBefore, hasMore));
+        }
+
+        private void remember(UserDto user) {
+            if (user != null && participants.putIfAbsent(user.getId(), user) == null) {
+                bytes += estimateBytes(user);
+            }
+        }
+
+        private void insert(MessageDto message) {
+            if (size == ring.length) {
+                // Dropping the oldest message means the buffer no longer holds the full history
+                bytes -= estimateBytes(ring[head]);
+                ring[head] = null;
+                head = (head + 1) % ring.length;
+                size--;
+                complete = false;
+            }
+            int position = size;
+            ring[slot(position)] = message;
+            size++;
+            // Sends can complete slightly out of order; bubble back into (createdAt, id) order
+            while (position > 0 && MESSAGE_ORDER.compare(get(position - 1), message) > 0) {
+                ring[slot(position)] = get(position - 1);
+                ring[slot(position - 1)] = message;
+                position--;
+            }
+            bytes += estimateBytes(message);
+        }
+
+        private boolean contains(Long messageId) {
+            return indexOf(messageId) >= 0;
+        }
+
+        private int indexOf(Long messageId) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (get(i).getId().equals(messageId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private MessageDto get(int index) {
+            return ring[slot(index)];
+        }
+
+        private int slot(int index) {
+            return (head + index) % ring.length;
+        }
+    }
+}
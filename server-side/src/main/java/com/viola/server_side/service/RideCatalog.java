@@ -0,0 +1,308 @@
+package com.viola.server_side.service;
+
+import com.viola.server_side.dto.NearbyRideDto;
+import com.viola.server_side.dto.RideDto;
+import com.viola.server_side.dto.UserDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * In-memory index of active rides, kept in sync by {@link RideService} on every ride mutation on
+ * any node (see {@link ClusterEventRelay}) and rebuilt from the database at startup. Rides are ordered both by creation time (feed order)
+ * and by departure time; rides with coordinates are also held in a {@link RideSpatialIndex}, and
+ * every ride's normalized location tokens in a {@link RideTokenIndex}. When the number of active rides exceeds the configured bound the catalog
+ * keeps only the newest rides and reports itself incomplete, so list reads fall back to the database until
+ * {@link RideService} reloads it once the active rides fit again.
+ */
+@Slf4j
+@Component
+public class RideCatalog {
+
+    private static final Comparator<FeedKey> FEED_ORDER = Comparator
+            .comparing(FeedKey::createdAt, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(FeedKey::id, Comparator.reverseOrder());
+
+    private static final Comparator<DepartureKey> DEPARTURE_ORDER = Comparator
+            .comparing(DepartureKey::departureAt, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(DepartureKey::id);
+
+    private final double cellSizeDegrees;
+    private final int maxSize;
+    private final Counter hits;
+    private final Counter misses;
+
+    // Replaced as a whole by rebuild; mutated in place under this object's lock
+    private volatile Indexes indexes;
+    private volatile boolean loaded = false;
+    // Changes made while a rebuild loads its snapshot, replayed onto the new indexes; guarded by this
+    private List<Consumer<Indexes>> pendingChanges;
+
+    public RideCatalog(@Value("${app.rides.catalog.max-size:10000}") int maxSize,
+                       @Value("${app.rides.spatial.cell-size-degrees:0.01}") double cellSizeDegrees,
+                       MeterRegistry meterRegistry) {
+        this.maxSize = maxSize;
+        this.cellSizeDegrees = cellSizeDegrees;
+        this.indexes = new Indexes(cellSizeDegrees);
+        this.hits = Counter.builder("viola.rides.catalog.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("viola.rides.catalog.requests").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("viola.rides.catalog.size", this, RideCatalog::size).register(meterRegistry);
+    }
+
+    /**
+     * Replaces the catalog contents with a full snapshot of active rides, newest first. The snapshot
+     * is indexed off to the side while the current contents keep serving reads; changes made
+     * meanwhile are applied to both, so none is lost when the new indexes are swapped in.
+     */
+    public void rebuild(Supplier<List<RideDto>> activeRides) {
+        synchronized (this) {
+            if (pendingChanges != null) {
+                throw new IllegalStateException("Ride catalog rebuild already in progress");
+            }
+            pendingChanges = new ArrayList<>();
+        }
+        Indexes fresh = new Indexes(cellSizeDegrees);
+        try {
+            activeRides.get().forEach(ride -> fresh.put(ride, maxSize));
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                pendingChanges = null;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            pendingChanges.forEach(change -> change.accept(fresh));
+            pendingChanges = null;
+            indexes = fresh;
+            loaded = true;
+        }
+        log.info("Ride catalog rebuilt with {} active rides (complete: {})", fresh.ridesById.size(), fresh.complete);
+    }
+
+    public void put(RideDto ride) {
+        apply(current -> current.put(ride, maxSize));
+    }
+
+    public void remove(Long rideId) {
+        apply(current -> current.remove(rideId));
+    }
+
+    /**
+     * Replaces every cached ride of that owner with a copy carrying the new owner profile and returns
+     * the copies; when the catalog is incomplete, rides of that owner it no longer holds are missing.
+     */
+    public synchronized List<RideDto> updateOwner(UserDto owner) {
+        Predicate<RideDto> ownedBy = ride -> ride.getOwner() != null && owner.getId().equals(ride.getOwner().getId());
+        apply(current -> current.ridesById.values().stream()
+                .filter(ownedBy)
+                .toList()
+                .forEach(ride -> current.put(ride.withOwner(owner), maxSize)));
+        return indexes.ridesById.values().stream().filter(ownedBy).toList();
+    }
+
+    private synchronized void apply(Consumer<Indexes> change) {
+        change.accept(indexes);
+        if (pendingChanges != null) {
+            pendingChanges.add(change);
+        }
+    }
+
+    /** Active ride by id, or empty when the ride is not cached (inactive, evicted or unknown). */
+    public Optional<RideDto> findById(Long rideId) {
+        RideDto ride = loaded ? indexes.ridesById.get(rideId) : null;
+        record(ride != null);
+        return Optional.ofNullable(ride);
+    }
+
+    /** All active rides newest first, or empty when the catalog cannot answer for the full set. */
+    public Optional<List<RideDto>> findAllActive() {
+        Indexes current = servable();
+        return current != null ? Optional.of(new ArrayList<>(current.ridesByCreation.values())) : Optional.empty();
+    }
+
+    /**
+     * One feed page strictly after the given keyset position (null for the first page),
+     * fetching up to {@code limit} matching rides. Empty when the catalog cannot answer.
+     */
+    public Optional<List<RideDto>> findFeedPage(LocalDateTime afterCreatedAt, Long afterId,
+                                                int limit, Predicate<RideDto> filter) {
+        Indexes current = servable();
+        if (current == null) {
+            return Optional.empty();
+        }
+        ConcurrentNavigableMap<FeedKey, RideDto> view = afterId == null
+                ? current.ridesByCreation
+                : current.ridesByCreation.tailMap(new FeedKey(afterCreatedAt, afterId), false);
+        List<RideDto> page = new ArrayList<>(limit);
+        for (RideDto ride : view.values()) {
+            if (filter.test(ride)) {
+                page.add(ride);
+                if (page.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return Optional.of(page);
+    }
+
+    /** Active rides in departure order, or empty when the catalog cannot answer for the full set. */
+    public Optional<List<RideDto>> findAllByDeparture() {
+        Indexes current = servable();
+        return current != null ? Optional.of(new ArrayList<>(current.ridesByDeparture.values())) : Optional.empty();
+    }
+
+    /**
+     * Active rides departing in [from, to) in departure order, or empty when the catalog
+     * cannot answer for the full set.
+     */
+    public Optional<List<RideDto>> findDepartingBetween(LocalDateTime from, LocalDateTime to) {
+        Indexes current = servable();
+        if (current == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new ArrayList<>(current.ridesByDeparture
+                .subMap(new DepartureKey(from, Long.MIN_VALUE), true, new DepartureKey(to, Long.MIN_VALUE), false)
+                .values()));
+    }
+
+    /**
+     * The k active rides nearest to the given pickup (and destination, when given) within the radius,
+     * or empty when the catalog cannot answer for the full set.
+     */
+    public Optional<List<NearbyRideDto>> findNearest(double pickupLat, double pickupLng,
+                                                     Double destinationLat, Double destinationLng,
+                                                     LocalDateTime from, LocalDateTime to, int k, double radiusKm) {
+        Indexes current = servable();
+        if (current == null) {
+            return Optional.empty();
+        }
+        return Optional.of(current.spatialIndex.findNearest(pickupLat, pickupLng, destinationLat, destinationLng,
+                from, to, k, radiusKm));
+    }
+
+    /**
+     * Active rides sharing a pickup or destination token with the query, with their precomputed
+     * tokens, or empty when the catalog cannot answer for the full set.
+     */
+    public Optional<Collection<RideTokenIndex.Candidate>> findMatchCandidates(Set<String> pickupTokens,
+                                                                              Set<String> destinationTokens) {
+        Indexes current = servable();
+        return current != null ? Optional.of(current.tokenIndex.candidates(pickupTokens, destinationTokens)) : Optional.empty();
+    }
+
+    /**
+     * Whether the catalog has evicted rides to stay within its bound and lists are answered from the
+     * database; it stays so until a {@link #rebuild} loads a snapshot that fits.
+     */
+    public boolean isOverflowed() {
+        return loaded && !indexes.complete;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** Whether the catalog holds every active ride, so lookups it misses are not in the database either. */
+    public boolean isComplete() {
+        return loaded && indexes.complete;
+    }
+
+    public int size() {
+        return indexes.ridesById.size();
+    }
+
+    /** The current indexes when they can answer for the full set of active rides, otherwise null. */
+    private Indexes servable() {
+        Indexes current = indexes;
+        boolean servable = loaded && current.complete;
+        record(servable);
+        return servable ? current : null;
+    }
+
+    private void record(boolean hit) {
+        (hit ? hits : misses).increment();
+    }
+
+    private static FeedKey feedKey(RideDto ride) {
+        return new FeedKey(ride.getCreatedAt(), ride.getId());
+    }
+
+    private static DepartureKey departureKey(RideDto ride) {
+        return new DepartureKey(ride.getDepartureAt(), ride.getId());
+    }
+
+    private record FeedKey(LocalDateTime createdAt, Long id) {
+    }
+
+    private record DepartureKey(LocalDateTime departureAt, Long id) {
+    }
+
+    /** One generation of the catalog's maps and indexes; written only under the catalog's lock. */
+    private static final class Indexes {
+
+        private final Map<Long, RideDto> ridesById = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListMap<FeedKey, RideDto> ridesByCreation = new ConcurrentSkipListMap<>(FEED_ORDER);
+        private final ConcurrentSkipListMap<DepartureKey, RideDto> ridesByDeparture = new ConcurrentSkipListMap<>(DEPARTURE_ORDER);
+        private final RideSpatialIndex spatialIndex;
+        private final RideTokenIndex tokenIndex = new RideTokenIndex();
+        private volatile boolean complete = true;
+
+        private Indexes(double cellSizeDegrees) {
+            this.spatialIndex = new RideSpatialIndex(cellSizeDegrees);
+        }
+
+        private void put(RideDto ride, int maxSize) {
+            if (!Boolean.TRUE.equals(ride.getIsActive())) {
+                remove(ride.getId());
+                return;
+            }
+            RideDto previous = ridesById.put(ride.getId(), ride);
+            if (previous != null) {
+                unindex(previous);
+            }
+            ridesByCreation.put(feedKey(ride), ride);
+            ridesByDeparture.put(departureKey(ride), ride);
+            spatialIndex.add(ride);
+            tokenIndex.add(ride);
+
+            while (ridesById.size() > maxSize) {
+                RideDto oldest = ridesByCreation.lastEntry().getValue();
+                ridesById.remove(oldest.getId());
+                unindex(oldest);
+                complete = false;
+            }
+        }
+
+        private void remove(Long rideId) {
+            RideDto previous = ridesById.remove(rideId);
+            if (previous != null) {
+                unindex(previous);
+            }
+        }
+
+        private void unindex(RideDto ride) {
+            ridesByCreation.remove(feedKey(ride));
+            ridesByDeparture.remove(departureKey(ride));
+            spatialIndex.remove(ride);
+            tokenIndex.remove(ride.getId());
+        }
+    }
+}
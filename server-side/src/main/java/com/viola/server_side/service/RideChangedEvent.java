@@ -0,0 +1,10 @@
+package com.viola.server_side.service;
+
+import com.viola.server_side.dto.RideDto;
+
+/**
+ * Published through the {@link ClusterEventRelay} when a ride is created, updated or deactivated,
+ * carrying its new state; an inactive ride is dropped from the catalog and the feed.
+ */
+public record RideChangedEvent(RideDto ride) {
+}
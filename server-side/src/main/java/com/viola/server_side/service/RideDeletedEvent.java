@@ -0,0 +1,8 @@
+package com.viola.server_side.service;
+
+/**
+ * Published by {@link RideService} on every node when a ride is deleted or queued for purging and can
+ * no longer take messages.
+ */
+public record RideDeletedEvent(Long rideId) {
+}
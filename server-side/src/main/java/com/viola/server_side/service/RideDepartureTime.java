@@ -0,0 +1,46 @@
+package com.viola.server_side.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Derives the typed departure timestamp from the free-form ride date ("yyyy-MM-dd")
+ * and ride time ("hh:mm AM/PM" as sent by the client, or 24-hour "HH:mm").
+ */
+public final class RideDepartureTime {
+
+    private static final List<DateTimeFormatter> TIME_FORMATS = List.of(
+        new DateTimeFormatterBuilder().parseCaseInsensitive().appendPattern("h:mm[ ]a").toFormatter(Locale.ENGLISH),
+        DateTimeFormatter.ofPattern("H:mm")
+    );
+
+    private RideDepartureTime() {
+    }
+
+    /** Wall-clock departure time, or null when either part cannot be parsed. */
+    public static LocalDateTime parse(String rideDate, String rideTime) {
+        if (rideDate == null || rideTime == null) {
+            return null;
+        }
+        LocalDate date;
+        try {
+            date = LocalDate.parse(rideDate.trim());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+        for (DateTimeFormatter format : TIME_FORMATS) {
+            try {
+                return LocalDateTime.of(date, LocalTime.parse(rideTime.trim(), format));
+            } catch (DateTimeParseException e) {
+                // Try the next format
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,89 @@
+package com.viola.server_side.service;
+
+import com.viola.server_side.repository.RideRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Periodically deactivates rides whose departure time has passed by more than the grace period.
+ * Each batch is a single set-based UPDATE in its own transaction; rows are claimed with
+ * FOR UPDATE SKIP LOCKED so several nodes can run the job concurrently without blocking each other.
+ * The expired ids are published through the {@link ClusterEventRelay}, so every node drops them
+ * from its catalog and feed.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.rides.expiry.enabled", havingValue = "true", matchIfMissing = true)
+public class RideExpiryJob {
+
+    private final RideRepository rideRepository;
+    private final ClusterEventRelay clusterEventRelay;
+    private final TransactionTemplate transactionTemplate;
+
+    private final long gracePeriodMinutes;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final ZoneId rideTimeZone;
+
+    private final Counter expiredRides;
+    private final DistributionSummary expiredPerRun;
+    private final Timer runTimer;
+
+    public RideExpiryJob(RideRepository rideRepository,
+                         ClusterEventRelay clusterEventRelay,
+                         TransactionTemplate transactionTemplate,
+                         MeterRegistry meterRegistry,
+                         @Value("${app.rides.expiry.grace-period-minutes:60}") long gracePeriodMinutes,
+                         @Value("${app.rides.expiry.batch-size:500}") int batchSize,
+                         @Value("${app.rides.expiry.max-batches-per-run:100}") int maxBatchesPerRun,
+                         @Value("${app.rides.time-zone:Asia/Kolkata}") String rideTimeZone) {
+        this.rideRepository = rideRepository;
+        this.clusterEventRelay = clusterEventRelay;
+        this.transactionTemplate = transactionTemplate;
+        this.gracePeriodMinutes = gracePeriodMinutes;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.rideTimeZone = ZoneId.of(rideTimeZone);
+        this.expiredRides = Counter.builder("viola.rides.expiry.expired").register(meterRegistry);
+        this.expiredPerRun = DistributionSummary.builder("viola.rides.expiry.expired.per.run").register(meterRegistry);
+        this.runTimer = Timer.builder("viola.rides.expiry.run").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.rides.expiry.interval-ms:300000}",
+               initialDelayString = "${app.rides.expiry.initial-delay-ms:60000}")
+    public void expireDepartedRides() {
+        runTimer.record(() -> {
+            LocalDateTime cutoff = LocalDateTime.now(rideTimeZone).minusMinutes(gracePeriodMinutes);
+            int total = 0;
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                List<Long> expiredIds = transactionTemplate.execute(
+                        status -> rideRepository.expireRidesDepartedBefore(cutoff, batchSize));
+                if (expiredIds == null || expiredIds.isEmpty()) {
+                    break;
+                }
+                clusterEventRelay.publish(new RidesExpiredEvent(expiredIds));
+                total += expiredIds.size();
+                if (expiredIds.size() < batchSize) {
+                    break;
+                }
+            }
+            expiredRides.increment(total);
+            expiredPerRun.record(total);
+            if (total > 0) {
+                log.info("Expired {} rides departed before {}", total, cutoff);
+            }
+        });
+    }
+}
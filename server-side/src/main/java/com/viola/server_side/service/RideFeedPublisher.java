@@ -0,0 +1,90 @@
+package com.viola.server_side.service;
+
+import com.viola.server_side.dto.RideDto;
+import com.viola.server_side.dto.RideFeedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Publishes ride feed deltas to {@code /topic/rides}. Every delta carries a sequence number;
+ * the most recent deltas are retained so a reconnecting client can catch up from the last
+ * sequence it saw instead of reloading the whole feed. Sequences start from the startup time
+ * so they keep increasing across restarts.
+ */
+@Slf4j
+@Component
+public class RideFeedPublisher {
+
+    public static final String FEED_TOPIC = "/topic/rides";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final int replaySize;
+    private final Deque<RideFeedEvent> recentEvents = new ArrayDeque<>();
+
+    private long sequence = System.currentTimeMillis();
+
+    public RideFeedPublisher(SimpMessagingTemplate messagingTemplate,
+                             @Value("${app.rides.feed.replay-size:1000}") int replaySize) {
+        this.messagingTemplate = messagingTemplate;
+        this.replaySize = replaySize;
+    }
+
+    public void publishUpsert(RideDto ride) {
+        if (!Boolean.TRUE.equals(ride.getIsActive())) {
+            publishRemove(ride.getId());
+            return;
+        }
+        publish("UPSERT", ride.getId(), ride);
+    }
+
+    public void publishRemove(Long rideId) {
+        publish("REMOVE", rideId, null);
+    }
+
+    public synchronized long currentSequence() {
+        return sequence;
+    }
+
+    /**
+     * Deltas after the given sequence, or empty when they are no longer retained
+     * (or the sequence was issued by another node or process) and the client must reload a snapshot.
+     */
+    public synchronized Optional<List<RideFeedEvent>> getEventsSince(long since) {
+        if (since == sequence) {
+            return Optional.of(List.of());
+        }
+        RideFeedEvent oldest = recentEvents.peekFirst();
+        if (since > sequence || oldest == null || since < oldest.getSequence() - 1) {
+            return Optional.empty();
+        }
+        List<RideFeedEvent> events = new ArrayList<>();
+        for (RideFeedEvent event : recentEvents) {
+            if (event.getSequence() > since) {
+                events.add(event);
+            }
+        }
+        return Optional.of(events);
+    }
+
+    private synchronized void publish(String type, Long rideId, RideDto ride) {
+        RideFeedEvent event = new RideFeedEvent(type, ++sequence, rideId, ride);
+        recentEvents.addLast(event);
+        if (recentEvents.size() > replaySize) {
+            recentEvents.removeFirst();
+        }
+        try {
+            messagingTemplate.convertAndSend(FEED_TOPIC, event);
+        } catch (Exception e) {
+            // Clients recover missed deltas through the changes endpoint
+            log.error("Error publishing ride feed event {} for ride {}: {}", type, rideId, e.getMessage());
+        }
+    }
+}
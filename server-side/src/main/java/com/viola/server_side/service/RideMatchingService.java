@@ -0,0 +1,138 @@
+package com.viola.server_side.service;
+
+import com.viola.server_side.dto.RideDto;
+import com.viola.server_side.dto.RideMatchDto;
+import com.viola.server_side.dto.RideMatchRequest;
+import com.viola.server_side.entity.GenderPreference;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Ranks active rides against a passenger's route. Candidates come from the ride catalog's token
+ * index (rides sharing a normalized pickup or destination token), are filtered on departure window,
+ * gender preference and price ceiling, and scored as a weighted sum of pickup similarity,
+ * destination similarity, closeness to the middle of the departure window and price headroom.
+ */
+@Service
+public class RideMatchingService {
+
+    private final RideCatalog rideCatalog;
+    private final RideService rideService;
+    private final double pickupWeight;
+    private final double destinationWeight;
+    private final double timeWeight;
+    private final double priceWeight;
+    private final int maxResults;
+
+    public RideMatchingService(RideCatalog rideCatalog,
+                               RideService rideService,
+                               @Value("${app.rides.matching.weight.pickup:0.4}") double pickupWeight,
+                               @Value("${app.rides.matching.weight.destination:0.4}") double destinationWeight,
+                               @Value("${app.rides.matching.weight.time:0.15}") double timeWeight,
+                               @Value("${app.rides.matching.weight.price:0.05}") double priceWeight,
+                               @Value("${app.rides.matching.max-results:50}") int maxResults) {
+        this.rideCatalog = rideCatalog;
+        this.rideService = rideService;
+        double total = pickupWeight + destinationWeight + timeWeight + priceWeight;
+        if (total <= 0) {
+            throw new IllegalArgumentException("Ride matching weights must sum to a positive value");
+        }
+        // Normalize so scores stay in 0..1 whatever the configured scale
+        this.pickupWeight = pickupWeight / total;
+        this.destinationWeight = destinationWeight / total;
+        this.timeWeight = timeWeight / total;
+        this.priceWeight = priceWeight / total;
+        this.maxResults = maxResults;
+    }
+
+    public List<RideMatchDto> match(RideMatchRequest request) {
+        LocalDateTime from = request.getDepartureFrom();
+        LocalDateTime to = request.getDepartureTo();
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("Departure window start must be before its end");
+        }
+        Set<String> pickupTokens = LocationTokenizer.tokenize(request.getPickup());
+        Set<String> destinationTokens = LocationTokenizer.tokenize(request.getDestination());
+        int limit = request.getLimit() == null ? 10 : Math.max(1, Math.min(request.getLimit(), maxResults));
+
+        Collection<RideTokenIndex.Candidate> candidates = rideCatalog
+                .findMatchCandidates(pickupTokens, destinationTokens)
+                .orElseGet(() -> RideTokenIndex.toCandidates(rideService.getAllActiveRides()));
+
+        List<RideMatchDto> matches = new ArrayList<>();
+        for (RideTokenIndex.Candidate candidate : candidates) {
+            RideDto ride = candidate.ride();
+            if (!departsWithin(ride, from, to)
+                    || !genderCompatible(ride, request.getGenderPreference())) {
+                continue;
+            }
+            Long price = parsePrice(ride.getPrice());
+            if (request.getMaxPrice() != null && (price == null || price > request.getMaxPrice())) {
+                continue;
+            }
+            double pickupScore = LocationTokenizer.similarity(pickupTokens, candidate.pickupTokens());
+            double destinationScore = LocationTokenizer.similarity(destinationTokens, candidate.destinationTokens());
+            if (pickupScore == 0.0 && destinationScore == 0.0) {
+                continue;
+            }
+            double score = pickupWeight * pickupScore
+                    + destinationWeight * destinationScore
+                    + timeWeight * timeScore(ride, from, to)
+                    + priceWeight * priceScore(price, request.getMaxPrice());
+            matches.add(new RideMatchDto(ride, score));
+        }
+
+        matches.sort(Comparator.comparingDouble(RideMatchDto::getScore).reversed());
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    private static boolean departsWithin(RideDto ride, LocalDateTime from, LocalDateTime to) {
+        if (from == null && to == null) {
+            return true;
+        }
+        LocalDateTime departure = ride.getDepartureAt();
+        return departure != null
+                && (from == null || !departure.isBefore(from))
+                && (to == null || !departure.isAfter(to));
+    }
+
+    private static boolean genderCompatible(RideDto ride, GenderPreference requested) {
+        return requested == null || requested == GenderPreference.ANYONE || requested == ride.getGenderPreference();
+    }
+
+    private static double timeScore(RideDto ride, LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null || ride.getDepartureAt() == null) {
+            return 0.0;
+        }
+        long start = from.toEpochSecond(ZoneOffset.UTC);
+        long halfWindow = (to.toEpochSecond(ZoneOffset.UTC) - start) / 2;
+        if (halfWindow == 0) {
+            return 1.0;
+        }
+        long offset = Math.abs(ride.getDepartureAt().toEpochSecond(ZoneOffset.UTC) - (start + halfWindow));
+        return Math.max(0.0, 1.0 - (double) offset / halfWindow);
+    }
+
+    private static double priceScore(Long price, Long maxPrice) {
+        if (price == null || maxPrice == null) {
+            return 0.0;
+        }
+        return Math.max(0.0, 1.0 - (double) price / maxPrice);
+    }
+
+    private static Long parsePrice(String price) {
+        try {
+            return price == null ? null : Long.parseLong(price.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.viola.server_side.service;
+
+import com.viola.server_side.repository.ConversationSummaryRepository;
+import com.viola.server_side.repository.MessageRepository;
+import com.viola.server_side.repository.ReadWatermarkRepository;
+import com.viola.server_side.repository.RideRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Background purge for permanently deleted rides whose chats were too large to delete inline.
+ * The {@code purge_pending} flag on the ride is the durable queue, so pending work survives restarts.
+ * Messages are deleted in bounded batches, each in its own short transaction, and the ride row is
+ * removed once its chat is empty. Every step is idempotent, so concurrent nodes can run it safely.
+ */
+@Slf4j
+@Component
+public class RideMessagePurger {
+
+    private final RideRepository rideRepository;
+    private final MessageRepository messageRepository;
+    private final ConversationSummaryRepository conversationSummaryRepository;
+    private final ReadWatermarkRepository readWatermarkRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final int ridesPerRun;
+
+    private final Counter purgedMessages;
+    private final Counter purgedRides;
+
+    public RideMessagePurger(RideRepository rideRepository,
+                             MessageRepository messageRepository,
+                             ConversationSummaryRepository conversationSummaryRepository,
+                             ReadWatermarkRepository readWatermarkRepository,
+                             TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.rides.purge.batch-size:1000}") int batchSize,
+                             @Value("${app.rides.purge.max-batches-per-run:50}") int maxBatchesPerRun,
+                             @Value("${app.rides.purge.rides-per-run:10}") int ridesPerRun) {
+        this.rideRepository = rideRepository;
+        this.messageRepository = messageRepository;
+        this.conversationSummaryRepository = conversationSummaryRepository;
+        this.readWatermarkRepository = readWatermarkRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.ridesPerRun = ridesPerRun;
+        this.purgedMessages = Counter.builder("viola.rides.purge.messages").register(meterRegistry);
+        this.purgedRides = Counter.builder("viola.rides.purge.rides").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.rides.purge.interval-ms:10000}")
+    public void purgePendingRides() {
+        List<Long> rideIds = rideRepository.findPurgePendingIds(PageRequest.of(0, ridesPerRun));
+        int batches = 0;
+        for (Long rideId : rideIds) {
+            while (batches < maxBatchesPerRun) {
+                Integer deleted = transactionTemplate.execute(
+                        status -> messageRepository.deleteBatchByRideId(rideId, batchSize));
+                batches++;
+                purgedMessages.increment(deleted == null ? 0 : deleted);
+                if (deleted == null || deleted < batchSize) {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        conversationSummaryRepository.deleteAllByRideIdInBulk(rideId);
+                        readWatermarkRepository.deleteAllByRideIdInBulk(rideId);
+                        rideRepository.deleteById(rideId);
+                    });
+                    purgedRides.increment();
+                    log.info("Purged messages and deleted ride {}", rideId);
+                    break;
+                }
+            }
+            if (batches >= maxBatchesPerRun) {
+                // Remaining work continues on the next run
+                break;
+            }
+        }
+    }
+}
@@ -1,18 +1,38 @@
 package com.viola.server_side.service;
 
 import com.viola.server_side.dto.CreateRideRequest;
+import com.viola.server_side.dto.NearbyRideDto;
 import com.viola.server_side.dto.RideDto;
+import com.viola.server_side.dto.RideFeedChangesDto;
+import com.viola.server_side.dto.RideFeedSnapshotDto;
+import com.viola.server_side.dto.RidePageDto;
+import com.viola.server_side.entity.GenderPreference;
 import com.viola.server_side.entity.Ride;
 import com.viola.server_side.entity.User;
 import com.viola.server_side.repository.RideRepository;
+import com.viola.server_side.repository.ConversationSummaryRepository;
 import com.viola.server_side.repository.MessageRepository;
+import com.viola.server_side.repository.ReadWatermarkRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class RideService {
@@ -20,6 +40,53 @@ public class RideService {
     private final RideRepository rideRepository;
     private final UserService userService;
     private final MessageRepository messageRepository;
+    private final ConversationSummaryRepository conversationSummaryRepository;
+    private final ReadWatermarkRepository readWatermarkRepository;
+    private final RideCatalog rideCatalog;
+    private final RideFeedPublisher rideFeedPublisher;
+    private final RideVersionTracker rideVersionTracker;
+    private final ClusterEventRelay clusterEventRelay;
+    
+    @Value("${app.rides.feed.default-page-size:20}")
+    private int defaultPageSize;
+    
+    @Value("${app.rides.feed.max-page-size:100}")
+    private int maxPageSize;
+    
+    // Whether pg_trgm is installed, checked on the first search; null until then
+    private volatile Boolean trigramSearch;
+    
+    @Value("${app.rides.time-zone:Asia/Kolkata}")
+    private String rideTimeZone;
+    
+    @Value("${app.rides.upcoming.max-window-hours:168}")
+    private long maxUpcomingWindowHours;
+    
+    @Value("${app.rides.purge.inline-threshold:1000}")
+    private long inlinePurgeThreshold;
+    
+    @Value("${app.rides.spatial.max-results:50}")
+    private int maxNearbyResults;
+    
+    @Value("${app.rides.spatial.max-radius-km:50}")
+    private double maxNearbyRadiusKm;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRideCatalog() {
+        rideCatalog.rebuild(() -> rideRepository.findByIsActiveTrueOrderByCreatedAtDesc()
+                .stream()
+                .map(this::convertToDto)
+                .collect(Collectors.toList()));
+    }
+    
+    @Scheduled(fixedDelayString = "${app.rides.catalog.overflow-check-interval-ms:60000}")
+    public void rebuildOverflowedCatalog() {
+        // Evicted rides are not tracked, so only a full reload can tell the catalog is whole again;
+        // count first to skip reloads that would overflow straight away
+        if (rideCatalog.isOverflowed() && rideRepository.countByIsActiveTrue() <= rideCatalog.getMaxSize()) {
+            loadRideCatalog();
+        }
+    }
     
     public RideDto createRide(CreateRideRequest request, Long userId) {
         User owner = userService.findById(userId)
@@ -36,29 +103,226 @@ public class RideService {
             request.getGenderPreference(),
             owner
         );
+        ride.setDepartureAt(RideDepartureTime.parse(request.getRideDate(), request.getRideTime()));
+        applyCoordinates(ride, request);
         
         Ride savedRide = rideRepository.save(ride);
-        return convertToDto(savedRide);
+        RideDto dto = convertToDto(savedRide);
+        clusterEventRelay.publish(new RideChangedEvent(dto));
+        return dto;
     }
     
     public List<RideDto> getAllActiveRides() {
-        return rideRepository.findByIsActiveTrueOrderByCreatedAtDesc()
+        return rideCatalog.findAllActive().orElseGet(() -> rideRepository.findByIsActiveTrueOrderByCreatedAtDesc()
                 .stream()
+                .map(this::convertToDto)
+                .collect(Collectors.toList()));
+    }
+    
+    @EventListener
+    public void onRideChanged(RideChangedEvent event) {
+        rideCatalog.put(event.ride());
+        rideVersionTracker.bump();
+        rideFeedPublisher.publishUpsert(event.ride());
+    }
+    
+    @EventListener
+    public void onRideDeleted(RideDeletedEvent event) {
+        rideCatalog.remove(event.rideId());
+        rideVersionTracker.bump();
+    }
+    
+    @EventListener
+    public void onRidesExpired(RidesExpiredEvent event) {
+        event.rideIds().forEach(rideCatalog::remove);
+        rideVersionTracker.bump();
+        event.rideIds().forEach(rideFeedPublisher::publishRemove);
+    }
+    
+    @EventListener
+    public void onUserProfileChanged(UserProfileChangedEvent event) {
+        List<RideDto> ownerRides = rideCatalog.updateOwner(event.user());
+        if (!rideCatalog.isComplete()) {
+            // Rides evicted from the catalog can still be on clients' feeds; the event may arrive before
+            // the profile update commits, so its owner is applied on top of the stored one
+            ownerRides = rideRepository.findByOwnerIdAndIsActiveTrueOrderByCreatedAtDesc(event.user().getId())
+                    .stream()
+                    .map(ride -> convertToDto(ride).withOwner(event.user()))
+                    .toList();
+        }
+        rideVersionTracker.bump();
+        // Whole rides, not just the owner: an UPSERT replaces the client's copy of the ride, both live and
+        // when replayed from the changes endpoint, so a partial one would need a separate merge delta
+        ownerRides.forEach(rideFeedPublisher::publishUpsert);
+    }
+    
+    public RideFeedSnapshotDto getRideFeedSnapshot() {
+        // Read the sequence first: deltas racing with the snapshot are re-applied idempotently by clients
+        long sequence = rideFeedPublisher.currentSequence();
+        return new RideFeedSnapshotDto(sequence, getAllActiveRides());
+    }
+    
+    public Optional<RideFeedChangesDto> getRideFeedChangesSince(long since) {
+        long sequence = rideFeedPublisher.currentSequence();
+        return rideFeedPublisher.getEventsSince(since)
+                .map(events -> new RideFeedChangesDto(
+                        events.isEmpty() ? sequence : events.get(events.size() - 1).getSequence(), events));
+    }
+    
+    public RidePageDto getActiveRideFeed(String cursor, Integer limit, String rideDate,
+                                         GenderPreference genderPreference, Boolean negotiable) {
+        int pageSize = Math.max(1, Math.min(limit == null ? defaultPageSize : limit, maxPageSize));
+        // Fetch one extra row to learn whether another page exists without a COUNT query
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+        
+        RideFeedCursor position = cursor == null || cursor.isBlank() ? null : RideFeedCursor.decode(cursor);
+        
+        List<RideDto> rides = rideCatalog.findFeedPage(
+                position != null ? position.createdAt() : null,
+                position != null ? position.id() : null,
+                pageSize + 1,
+                ride -> (rideDate == null || rideDate.equals(ride.getRideDate()))
+                        && (genderPreference == null || genderPreference == ride.getGenderPreference())
+                        && (negotiable == null || negotiable.equals(ride.getNegotiable())))
+                .orElseGet(() -> loadFeedPage(position, rideDate, genderPreference, negotiable, pageRequest));
+        
+        boolean hasMore = rides.size() > pageSize;
+        List<RideDto> page = hasMore ? rides.subList(0, pageSize) : rides;
+        
+        String nextCursor = null;
+        if (hasMore) {
+            RideDto last = page.get(page.size() - 1);
+            nextCursor = new RideFeedCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        
+        return new RidePageDto(page, nextCursor, hasMore);
+    }
+    
+    private List<RideDto> loadFeedPage(RideFeedCursor position, String rideDate,
+                                       GenderPreference genderPreference, Boolean negotiable,
+                                       PageRequest pageRequest) {
+        List<Ride> rides = position == null
+                ? rideRepository.findActiveFeedPage(rideDate, genderPreference, negotiable, pageRequest)
+                : rideRepository.findActiveFeedPageAfter(position.createdAt(), position.id(),
+                        rideDate, genderPreference, negotiable, pageRequest);
+        return rides.stream()
                 .map(this::convertToDto)
                 .collect(Collectors.toList());
     }
     
+    public RidePageDto searchActiveRides(String query, String cursor, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query is required");
+        }
+        String term = query.trim();
+        int pageSize = Math.max(1, Math.min(limit == null ? defaultPageSize : limit, maxPageSize));
+        long offset = parseSearchCursor(cursor);
+        
+        // Escape LIKE wildcards so user input is matched literally
+        String escaped = term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        String pattern = "%" + escaped + "%";
+        List<Long> ids = isTrigramSearchAvailable()
+                ? rideRepository.searchActiveRideIds(term, pattern, pageSize + 1, offset)
+                : rideRepository.searchActiveRideIdsByPattern(pattern, escaped + "%", pageSize + 1, offset);
+        
+        boolean hasMore = ids.size() > pageSize;
+        List<Long> pageIds = hasMore ? ids.subList(0, pageSize) : ids;
+        
+        // Load the page with owners in one statement, then restore relevance order
+        Map<Long, Ride> ridesById = rideRepository.findWithOwnerByIdIn(pageIds)
+                .stream()
+                .collect(Collectors.toMap(Ride::getId, Function.identity()));
+        List<RideDto> rides = pageIds.stream()
+                .map(ridesById::get)
+                .filter(Objects::nonNull)
+                .map(this::convertToDto)
+                .collect(Collectors.toList());
+        
+        String nextCursor = hasMore ? String.valueOf(offset + pageSize) : null;
+        return new RidePageDto(rides, nextCursor, hasMore);
+    }
+    
+    /** Without pg_trgm the similarity operator and function do not exist, so search uses ILIKE alone. */
+    private boolean isTrigramSearchAvailable() {
+        Boolean available = trigramSearch;
+        if (available == null) {
+            available = rideRepository.isTrigramExtensionInstalled();
+            if (!available) {
+                log.warn("pg_trgm is not installed; ride search falls back to substring matching");
+            }
+            trigramSearch = available;
+        }
+        return available;
+    }
+    
+    private long parseSearchCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+        try {
+            long offset = Long.parseLong(cursor);
+            if (offset < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return offset;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+    
+    public List<RideDto> getRidesDepartingWithin(long hours) {
+        if (hours <= 0) {
+            throw new IllegalArgumentException("Time window must be positive");
+        }
+        // Ride times are wall-clock times entered by users in the campus time zone
+        LocalDateTime from = LocalDateTime.now(ZoneId.of(rideTimeZone));
+        LocalDateTime to = from.plusHours(Math.min(hours, maxUpcomingWindowHours));
+        return getRidesDepartingBetween(from, to);
+    }
+    
+    public List<RideDto> getRidesDepartingBetween(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Time window start must be before its end");
+        }
+        return rideCatalog.findDepartingBetween(from, to).orElseGet(() -> rideRepository
+                .findActiveDepartingBetween(from, to)
+                .stream()
+                .map(this::convertToDto)
+                .collect(Collectors.toList()));
+    }
+    
+    public List<NearbyRideDto> findNearbyRides(double pickupLat, double pickupLng,
+                                               Double destinationLat, Double destinationLng,
+                                               LocalDateTime from, LocalDateTime to,
+                                               Integer limit, Double radiusKm) {
+        if ((destinationLat == null) != (destinationLng == null)) {
+            throw new IllegalArgumentException("Destination coordinates require both latitude and longitude");
+        }
+        int k = limit == null ? 10 : Math.max(1, Math.min(limit, maxNearbyResults));
+        double radius = radiusKm == null ? 5.0 : Math.max(0.0, Math.min(radiusKm, maxNearbyRadiusKm));
+        
+        // The catalog's grid answers in memory; scan rides with coordinates only if it overflowed
+        return rideCatalog.findNearest(pickupLat, pickupLng, destinationLat, destinationLng, from, to, k, radius)
+                .orElseGet(() -> RideSpatialIndex.rankNearest(
+                        rideRepository.findByIsActiveTrueAndPickupLatIsNotNull()
+                                .stream()
+                                .map(this::convertToDto)
+                                .collect(Collectors.toList()),
+                        pickupLat, pickupLng, destinationLat, destinationLng, from, to, k, radius));
+    }
+    
     public List<RideDto> getRidesByOwner(Long ownerId) {
-        return rideRepository.findByOwnerIdOrderByCreatedAtDesc(ownerId)
+        return rideRepository.findByOwnerIdAndPurgePendingFalseOrderByCreatedAtDesc(ownerId)
                 .stream()
                 .map(this::convertToDto)
                 .collect(Collectors.toList());
     }
     
     public RideDto getRideById(Long rideId) {
-        Ride ride = rideRepository.findById(rideId)
-                .orElseThrow(() -> new IllegalArgumentException("Ride not found"));
-        return convertToDto(ride);
+        return rideCatalog.findById(rideId).orElseGet(() -> rideRepository.findWithOwnerById(rideId)
+                .filter(ride -> !ride.getPurgePending())
+                .map(this::convertToDto)
+                .orElseThrow(() -> new IllegalArgumentException("Ride not found")));
     }
     
     public RideDto updateRide(Long rideId, CreateRideRequest request, Long userId) {
@@ -73,13 +337,17 @@ public class RideService {
         ride.setDestination(request.getDestination());
         ride.setRideDate(request.getRideDate());
         ride.setRideTime(request.getRideTime());
+        ride.setDepartureAt(RideDepartureTime.parse(request.getRideDate(), request.getRideTime()));
+        applyCoordinates(ride, request);
         ride.setPrice(request.getPrice());
         ride.setNegotiable(request.getNegotiable());
         ride.setDescription(request.getDescription());
         ride.setGenderPreference(request.getGenderPreference());
         
         Ride updatedRide = rideRepository.save(ride);
-        return convertToDto(updatedRide);
+        RideDto dto = convertToDto(updatedRide);
+        clusterEventRelay.publish(new RideChangedEvent(dto));
+        return dto;
     }
     
     public void deactivateRide(Long rideId, Long userId) {
@@ -91,7 +359,8 @@ public class RideService {
         }
         
         ride.setIsActive(false);
-        rideRepository.save(ride);
+        Ride deactivatedRide = rideRepository.save(ride);
+        clusterEventRelay.publish(new RideChangedEvent(convertToDto(deactivatedRide)));
     }
     
     @Transactional
@@ -107,11 +376,31 @@ public class RideService {
             throw new IllegalArgumentException("You can only delete resolved rides");
         }
         
-        // Delete all messages associated with this ride first
-        messageRepository.deleteByRideId(rideId);
+        if (ride.getPurgePending()) {
+            return;
+        }
         
-        // Now delete the ride
-        rideRepository.delete(ride);
+        if (messageRepository.countByRideId(rideId) > inlinePurgeThreshold) {
+            // Large chats are purged in bounded batches by RideMessagePurger, which then deletes the ride
+            ride.setPurgePending(true);
+            rideRepository.save(ride);
+        } else {
+            // Delete all messages associated with this ride first, in a single statement
+            messageRepository.deleteAllByRideIdInBulk(rideId);
+            conversationSummaryRepository.deleteAllByRideIdInBulk(rideId);
+            readWatermarkRepository.deleteAllByRideIdInBulk(rideId);
+            
+            // Now delete the ride
+            rideRepository.delete(ride);
+        }
+        clusterEventRelay.publish(new RideDeletedEvent(rideId));
+    }
+    
+    private void applyCoordinates(Ride ride, CreateRideRequest request) {
+        ride.setPickupLat(request.getPickupLat());
+        ride.setPickupLng(request.getPickupLng());
+        ride.setDestinationLat(request.getDestinationLat());
+        ride.setDestinationLng(request.getDestinationLng());
     }
     
     private RideDto convertToDto(Ride ride) {
@@ -121,13 +410,18 @@ public class RideService {
             ride.getDestination(),
             ride.getRideDate(),
             ride.getRideTime(),
+            ride.getDepartureAt(),
             ride.getPrice(),
             ride.getNegotiable(),
             ride.getDescription(),
             ride.getGenderPreference(),
             userService.convertToDto(ride.getOwner()),
             ride.getIsActive(),
-            ride.getCreatedAt()
+            ride.getCreatedAt(),
+            ride.getPickupLat(),
+            ride.getPickupLng(),
+            ride.getDestinationLat(),
+            ride.getDestinationLng()
         );
     }
 }
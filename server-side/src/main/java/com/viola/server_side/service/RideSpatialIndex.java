@@ -0,0 +1,210 @@
+package com.viola.server_side.service;
+
+import com.viola.server_side.dto.NearbyRideDto;
+import com.viola.server_side.dto.RideDto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Uniform latitude/longitude grid over ride pickup points. A nearest-ride query scans rings of
+ * cells outward from the requested pickup and stops as soon as no unvisited cell can hold a ride
+ * closer than the current k-th best match. Distances use an equirectangular approximation, which
+ * is well under 0.1% off at the city scale this is queried at. Writes are serialized by the owning
+ * {@link RideCatalog}; reads are lock-free.
+ */
+public class RideSpatialIndex {
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180.0;
+
+    private final double cellSizeDegrees;
+    // Cell key -> rides in that cell by id (RideDto equality is field-based and mutable, so rides are keyed by id)
+    private final Map<Long, Map<Long, RideDto>> cells = new ConcurrentHashMap<>();
+
+    public RideSpatialIndex(double cellSizeDegrees) {
+        // Smaller cells would push grid coordinates near the int range
+        if (!(cellSizeDegrees >= 1e-6)) {
+            throw new IllegalArgumentException("Cell size must be at least 1e-6 degrees");
+        }
+        this.cellSizeDegrees = cellSizeDegrees;
+    }
+
+    public void add(RideDto ride) {
+        if (hasPickup(ride)) {
+            cells.computeIfAbsent(cellOf(ride.getPickupLat(), ride.getPickupLng()), key -> new ConcurrentHashMap<>())
+                    .put(ride.getId(), ride);
+        }
+    }
+
+    public void remove(RideDto ride) {
+        if (hasPickup(ride)) {
+            long key = cellOf(ride.getPickupLat(), ride.getPickupLng());
+            Map<Long, RideDto> cell = cells.get(key);
+            if (cell != null) {
+                cell.remove(ride.getId());
+                if (cell.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Up to {@code k} rides whose pickup lies within {@code radiusKm} of the given point, ordered by
+     * pickup distance plus destination distance (when a destination is given), optionally restricted
+     * to departures in [from, to). Rings are scanned only while their area stays below the number of
+     * occupied cells; past that, the remaining occupied cells are checked directly, so a wide radius
+     * or a polar query costs at most one pass over the index.
+     */
+    public List<NearbyRideDto> findNearest(double pickupLat, double pickupLng, Double destinationLat,
+                                           Double destinationLng, LocalDateTime from, LocalDateTime to,
+                                           int k, double radiusKm) {
+        if (!isValidCoordinate(pickupLat, pickupLng)) {
+            throw new IllegalArgumentException("Pickup coordinates out of range");
+        }
+        int row = (int) Math.floor(pickupLat / cellSizeDegrees);
+        int column = (int) Math.floor(pickupLng / cellSizeDegrees);
+        // Narrowest cell edge around the query point, so ring distances are a safe lower bound
+        double cellKm = cellSizeDegrees * KM_PER_DEGREE * Math.max(Math.cos(Math.toRadians(Math.abs(pickupLat) + cellSizeDegrees)), 0.01);
+        long maxRing = (long) Math.ceil(radiusKm / cellKm) + 1;
+        // Ring r covers (2r + 1)^2 cells; beyond this many rings a direct pass over occupied cells is cheaper
+        int ringLimit = (int) Math.min(maxRing, (long) ((Math.sqrt(cells.size()) - 1) / 2));
+
+        PriorityQueue<NearbyRideDto> best = new PriorityQueue<>(Comparator.comparingDouble(RideSpatialIndex::score).reversed());
+        for (int ring = 0; ring <= ringLimit; ring++) {
+            // Anything in this ring or beyond is at least (ring - 1) whole cells away
+            if (isSettled(best, k, ring, cellKm)) {
+                return sorted(best);
+            }
+            for (int c = column - ring; c <= column + ring; c++) {
+                collectCell(row - ring, c, pickupLat, pickupLng, destinationLat, destinationLng, from, to, k, radiusKm, best);
+                if (ring > 0) {
+                    collectCell(row + ring, c, pickupLat, pickupLng, destinationLat, destinationLng, from, to, k, radiusKm, best);
+                }
+            }
+            for (int r = row - ring + 1; r <= row + ring - 1; r++) {
+                collectCell(r, column - ring, pickupLat, pickupLng, destinationLat, destinationLng, from, to, k, radiusKm, best);
+                collectCell(r, column + ring, pickupLat, pickupLng, destinationLat, destinationLng, from, to, k, radiusKm, best);
+            }
+        }
+        if (ringLimit < maxRing && !isSettled(best, k, ringLimit + 1, cellKm)) {
+            for (Map.Entry<Long, Map<Long, RideDto>> cell : cells.entrySet()) {
+                long key = cell.getKey();
+                long ring = Math.max(Math.abs((long) (int) (key >> 32) - row), Math.abs((long) (int) key - column));
+                if (ring > ringLimit && ring <= maxRing) {
+                    collect(cell.getValue().values(), pickupLat, pickupLng, destinationLat, destinationLng, from, to, k, radiusKm, best);
+                }
+            }
+        }
+        return sorted(best);
+    }
+
+    /** True when both values are finite and within [-90, 90] and [-180, 180] degrees. */
+    public static boolean isValidCoordinate(double lat, double lng) {
+        return Double.isFinite(lat) && Double.isFinite(lng) && Math.abs(lat) <= 90.0 && Math.abs(lng) <= 180.0;
+    }
+
+    /** Same ranking as {@link #findNearest} over an arbitrary collection, for callers without an index. */
+    public static List<NearbyRideDto> rankNearest(Collection<RideDto> rides, double pickupLat, double pickupLng,
+                                                  Double destinationLat, Double destinationLng,
+                                                  LocalDateTime from, LocalDateTime to, int k, double radiusKm) {
+        PriorityQueue<NearbyRideDto> best = new PriorityQueue<>(Comparator.comparingDouble(RideSpatialIndex::score).reversed());
+        collect(rides, pickupLat, pickupLng, destinationLat, destinationLng, from, to, k, radiusKm, best);
+        return sorted(best);
+    }
+
+    private void collectCell(int row, int column, double pickupLat, double pickupLng,
+                             Double destinationLat, Double destinationLng, LocalDateTime from, LocalDateTime to,
+                             int k, double radiusKm, PriorityQueue<NearbyRideDto> best) {
+        Map<Long, RideDto> cell = cells.get(key(row, column));
+        if (cell != null) {
+            collect(cell.values(), pickupLat, pickupLng, destinationLat, destinationLng, from, to, k, radiusKm, best);
+        }
+    }
+
+    private static boolean isSettled(PriorityQueue<NearbyRideDto> best, int k, int ring, double cellKm) {
+        return best.size() == k && (ring - 1) * cellKm > score(best.peek());
+    }
+
+    private static double distanceKm(double lat, double lng, double cosLat, double otherLat, double otherLng) {
+        double dy = (otherLat - lat) * KM_PER_DEGREE;
+        double dx = (otherLng - lng) * KM_PER_DEGREE * cosLat;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private static void collect(Collection<RideDto> rides, double pickupLat, double pickupLng,
+                                Double destinationLat, Double destinationLng, LocalDateTime from, LocalDateTime to,
+                                int k, double radiusKm, PriorityQueue<NearbyRideDto> best) {
+        boolean withDestination = destinationLat != null && destinationLng != null;
+        double pickupCos = Math.cos(Math.toRadians(pickupLat));
+        double destinationCos = withDestination ? Math.cos(Math.toRadians(destinationLat)) : 0.0;
+        for (RideDto ride : rides) {
+            if (!hasPickup(ride) || !departsWithin(ride, from, to)) {
+                continue;
+            }
+            // Latitude difference alone is a cheap lower bound on the distance
+            if (Math.abs(ride.getPickupLat() - pickupLat) * KM_PER_DEGREE > radiusKm) {
+                continue;
+            }
+            double worst = best.size() < k ? Double.MAX_VALUE : score(best.peek());
+            double pickupDistance = distanceKm(pickupLat, pickupLng, pickupCos, ride.getPickupLat(), ride.getPickupLng());
+            if (pickupDistance > radiusKm || pickupDistance >= worst) {
+                continue;
+            }
+            Double destinationDistance = null;
+            if (withDestination) {
+                if (ride.getDestinationLat() == null || ride.getDestinationLng() == null) {
+                    continue;
+                }
+                destinationDistance = distanceKm(destinationLat, destinationLng, destinationCos,
+                        ride.getDestinationLat(), ride.getDestinationLng());
+                if (pickupDistance + destinationDistance >= worst) {
+                    continue;
+                }
+            }
+            if (best.size() == k) {
+                best.poll();
+            }
+            best.add(new NearbyRideDto(ride, pickupDistance, destinationDistance));
+        }
+    }
+
+    private static boolean departsWithin(RideDto ride, LocalDateTime from, LocalDateTime to) {
+        if (from == null && to == null) {
+            return true;
+        }
+        LocalDateTime departure = ride.getDepartureAt();
+        return departure != null
+                && (from == null || !departure.isBefore(from))
+                && (to == null || departure.isBefore(to));
+    }
+
+    private static List<NearbyRideDto> sorted(PriorityQueue<NearbyRideDto> best) {
+        List<NearbyRideDto> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(RideSpatialIndex::score));
+        return result;
+    }
+
+    private static double score(NearbyRideDto match) {
+        return match.getPickupDistanceKm() + (match.getDestinationDistanceKm() != null ? match.getDestinationDistanceKm() : 0.0);
+    }
+
+    private static boolean hasPickup(RideDto ride) {
+        return ride.getPickupLat() != null && ride.getPickupLng() != null;
+    }
+
+    private long cellOf(double lat, double lng) {
+        return key((int) Math.floor(lat / cellSizeDegrees), (int) Math.floor(lng / cellSizeDegrees));
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+}
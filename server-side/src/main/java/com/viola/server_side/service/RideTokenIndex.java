@@ -0,0 +1,88 @@
+package com.viola.server_side.service;
+
+import com.viola.server_side.dto.RideDto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Inverted index from normalized pickup and destination tokens to rides, with each ride's
+ * tokens precomputed once at index time. Writes are serialized by the owning {@link RideCatalog};
+ * reads are lock-free.
+ */
+public class RideTokenIndex {
+
+    public record Candidate(RideDto ride, Set<String> pickupTokens, Set<String> destinationTokens) {
+    }
+
+    private final Map<Long, Candidate> candidatesById = new ConcurrentHashMap<>();
+    private final Map<String, Map<Long, Candidate>> byPickupToken = new ConcurrentHashMap<>();
+    private final Map<String, Map<Long, Candidate>> byDestinationToken = new ConcurrentHashMap<>();
+
+    public void add(RideDto ride) {
+        Candidate candidate = new Candidate(ride,
+                LocationTokenizer.tokenize(ride.getPickup()),
+                LocationTokenizer.tokenize(ride.getDestination()));
+        candidatesById.put(ride.getId(), candidate);
+        candidate.pickupTokens().forEach(token ->
+                byPickupToken.computeIfAbsent(token, key -> new ConcurrentHashMap<>()).put(ride.getId(), candidate));
+        candidate.destinationTokens().forEach(token ->
+                byDestinationToken.computeIfAbsent(token, key -> new ConcurrentHashMap<>()).put(ride.getId(), candidate));
+    }
+
+    public void remove(Long rideId) {
+        Candidate candidate = candidatesById.remove(rideId);
+        if (candidate != null) {
+            candidate.pickupTokens().forEach(token -> removePosting(byPickupToken, token, rideId));
+            candidate.destinationTokens().forEach(token -> removePosting(byDestinationToken, token, rideId));
+        }
+    }
+
+    /** Rides sharing at least one pickup or destination token with the query. */
+    public Collection<Candidate> candidates(Set<String> pickupTokens, Set<String> destinationTokens) {
+        List<Map<Long, Candidate>> postings = new ArrayList<>();
+        int expected = 0;
+        for (String token : pickupTokens) {
+            Map<Long, Candidate> posting = byPickupToken.get(token);
+            if (posting != null) {
+                postings.add(posting);
+                expected += posting.size();
+            }
+        }
+        for (String token : destinationTokens) {
+            Map<Long, Candidate> posting = byDestinationToken.get(token);
+            if (posting != null) {
+                postings.add(posting);
+                expected += posting.size();
+            }
+        }
+        Map<Long, Candidate> matches = new HashMap<>(expected * 4 / 3 + 1);
+        postings.forEach(matches::putAll);
+        return matches.values();
+    }
+
+    /** Tokenizes rides that are not indexed, for callers scoring an arbitrary collection. */
+    public static List<Candidate> toCandidates(Collection<RideDto> rides) {
+        return rides.stream()
+                .map(ride -> new Candidate(ride,
+                        LocationTokenizer.tokenize(ride.getPickup()),
+                        LocationTokenizer.tokenize(ride.getDestination())))
+                .collect(Collectors.toList());
+    }
+
+    private static void removePosting(Map<String, Map<Long, Candidate>> index, String token, Long rideId) {
+        Map<Long, Candidate> postings = index.get(token);
+        if (postings != null) {
+            postings.remove(rideId);
+            if (postings.isEmpty()) {
+                index.remove(token);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.viola.server_side.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counter bumped on every change that can alter a ride response (ride mutations,
+ * expiry, owner profile changes). Ride endpoints derive strong ETags from it so an unchanged
+ * poll is answered with 304 before any lookup or serialization. A bump inside a transaction
+ * takes effect after commit, so a poll cannot pair the new version with the old rows.
+ *
+ * <p>On a single node the version is an in-memory counter, and the instance id keeps ETags
+ * issued before a restart from matching. With several nodes ({@code app.cluster.fanout} other
+ * than {@code local}) it is the {@code ride_version_seq} sequence, read once per ETag, so every
+ * node issues the same ETag. Each node also bumps it after applying a change relayed from another
+ * node; a response served while the node still had the old state then carries a version that is
+ * already superseded.
+ */
+@Component
+public class RideVersionTracker {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean shared;
+    private final String instanceId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong version = new AtomicLong();
+
+    public RideVersionTracker(JdbcTemplate jdbcTemplate,
+                              @Value("${app.cluster.fanout:local}") String clusterFanout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shared = !"local".equals(clusterFanout);
+    }
+
+    public void bump() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment();
+                }
+            });
+        } else {
+            increment();
+        }
+    }
+
+    public String allRidesETag() {
+        return etag("rides");
+    }
+
+    public String rideETag(Long rideId) {
+        return etag("ride-" + rideId);
+    }
+
+    public String ownerRidesETag(Long ownerId) {
+        return etag("owner-" + ownerId);
+    }
+
+    private void increment() {
+        if (shared) {
+            jdbcTemplate.queryForObject("SELECT nextval('ride_version_seq')", Long.class);
+        } else {
+            version.incrementAndGet();
+        }
+    }
+
+    private String etag(String scope) {
+        if (shared) {
+            return "\"" + scope + "-" + sharedVersion() + "\"";
+        }
+        return "\"" + scope + "-" + instanceId + "-" + version.get() + "\"";
+    }
+
+    private long sharedVersion() {
+        // last_value reads 1 both before and after the first nextval; is_called tells them apart
+        return jdbcTemplate.queryForObject(
+                "SELECT CASE WHEN is_called THEN last_value ELSE 0 END FROM ride_version_seq", Long.class);
+    }
+}
@@ -0,0 +1,7 @@
+package com.viola.server_side.service;
+
+import java.util.List;
+
+/** Published by {@link RideExpiryJob} on every node for each batch of rides it deactivated. */
+public record RidesExpiredEvent(List<Long> rideIds) {
+}
@@ -0,0 +1,149 @@
+package com.viola.server_side.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This node's STOMP sessions, indexed by user and by ride topic, maintained by
+ * {@link com.viola.server_side.config.WebSocketAuthInterceptor} from CONNECT, SUBSCRIBE,
+ * UNSUBSCRIBE and DISCONNECT frames. Lookups are single map reads, so the send path can ask
+ * whether a user or ride has local listeners without going through the broker.
+ */
+@Component
+public class StompSessionRegistry {
+
+    public static final String RIDE_TOPIC_PREFIX = "/topic/ride.";
+
+    private final Map<String, SessionEntry> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+    private final Map<Long, Set<String>> sessionsByRide = new ConcurrentHashMap<>();
+
+    public StompSessionRegistry(MeterRegistry meterRegistry) {
+        Gauge.builder("viola.websocket.registry.sessions", sessions, Map::size).register(meterRegistry);
+        Gauge.builder("viola.websocket.registry.rides", sessionsByRide, Map::size).register(meterRegistry);
+    }
+
+    /** Ride id of a {@code /topic/ride.{id}} destination, or null for any other destination. */
+    public static Long parseRideTopic(String destination) {
+        if (destination == null || !destination.startsWith(RIDE_TOPIC_PREFIX)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(destination.substring(RIDE_TOPIC_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** Records a connected session; {@code user} is null for anonymous sessions, {@code payloadType} for JSON. */
+    public void register(String sessionId, String user, MimeType payloadType) {
+        sessions.put(sessionId, new SessionEntry(user, payloadType));
+        if (user != null) {
+            addTo(sessionsByUser, user, sessionId);
+        }
+    }
+
+    public void subscribe(String sessionId, String subscriptionId, String destination) {
+        SessionEntry entry = sessions.get(sessionId);
+        if (entry == null || subscriptionId == null) {
+            return;
+        }
+        entry.subscriptions.put(subscriptionId, destination);
+        Long rideId = parseRideTopic(destination);
+        if (rideId != null) {
+            addTo(sessionsByRide, rideId, sessionId);
+        }
+    }
+
+    public void unsubscribe(String sessionId, String subscriptionId) {
+        SessionEntry entry = sessions.get(sessionId);
+        if (entry == null || subscriptionId == null) {
+            return;
+        }
+        String destination = entry.subscriptions.remove(subscriptionId);
+        Long rideId = parseRideTopic(destination);
+        if (rideId != null && !entry.subscriptions.containsValue(destination)) {
+            removeFrom(sessionsByRide, rideId, sessionId);
+        }
+    }
+
+    public void remove(String sessionId) {
+        SessionEntry entry = sessions.remove(sessionId);
+        if (entry == null) {
+            return;
+        }
+        if (entry.user != null) {
+            removeFrom(sessionsByUser, entry.user, sessionId);
+        }
+        for (String destination : entry.subscriptions.values()) {
+            Long rideId = parseRideTopic(destination);
+            if (rideId != null) {
+                removeFrom(sessionsByRide, rideId, sessionId);
+            }
+        }
+    }
+
+    /** Payload type the session negotiated on CONNECT, or null for JSON. */
+    public MimeType payloadTypeOf(String sessionId) {
+        SessionEntry entry = sessionId != null ? sessions.get(sessionId) : null;
+        return entry != null ? entry.payloadType : null;
+    }
+
+    public boolean hasSessions(String user) {
+        return sessionsByUser.containsKey(user);
+    }
+
+    public Set<String> sessionsOfUser(String user) {
+        return sessionsByUser.getOrDefault(user, Set.of());
+    }
+
+    public Set<String> sessionsOfRide(Long rideId) {
+        return sessionsByRide.getOrDefault(rideId, Set.of());
+    }
+
+    /** Number of the user's sessions subscribed to the destination, e.g. {@code /user/queue/private}. */
+    public int countSubscribedSessions(String user, String destination) {
+        int count = 0;
+        for (String sessionId : sessionsOfUser(user)) {
+            SessionEntry entry = sessions.get(sessionId);
+            if (entry != null && entry.subscriptions.containsValue(destination)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Index sets are added to and emptied inside compute, so a removal never drops a concurrent add
+    private static <K> void addTo(Map<K, Set<String>> index, K key, String sessionId) {
+        index.compute(key, (k, ids) -> {
+            Set<String> target = ids != null ? ids : ConcurrentHashMap.newKeySet();
+            target.add(sessionId);
+            return target;
+        });
+    }
+
+    private static <K> void removeFrom(Map<K, Set<String>> index, K key, String sessionId) {
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(sessionId);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private static final class SessionEntry {
+        private final String user;
+        private final MimeType payloadType;
+        // Subscription id -> destination
+        private final Map<String, String> subscriptions = new ConcurrentHashMap<>();
+
+        private SessionEntry(String user, MimeType payloadType) {
+            this.user = user;
+            this.payloadType = payloadType;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.viola.server_side.service;
+
+import com.viola.server_side.repository.ConversationSummaryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory unread counts per (user, ride), so the unread badge no longer loads messages.
+ * A user's counts are loaded from {@code conversation_summary} on first access, then moved with
+ * atomic increments on send and resets on read. Every change is pushed to {@code /user/queue/unread}
+ * on every node so clients can drop polling.
+ *
+ * <p>The send path calls {@link #preload} before the message is handed to the persistence pipeline,
+ * so a loaded snapshot never already counts the message that {@link #onMessageSent} then adds.
+ * Increments only touch counts that are still cached: counts evicted in between are reloaded from
+ * the summary, which holds the message once it is committed. When more than
+ * {@code app.chat.unread.max-users} users are cached, one user is evicted per new load.
+ *
+ * <p>Sends and reads on other nodes move the same counts, so nothing is cached unless
+ * {@code app.cluster.fanout} is {@code local}: every read and push then recounts from the summary.
+ * In {@code ASYNC} persistence mode such a count can trail messages that are still queued.
+ */
+@Slf4j
+@Service
+public class UnreadCounterService {
+
+    private final ConversationSummaryRepository conversationSummaryRepository;
+    private final ClusterMessagingService clusterMessagingService;
+    private final int maxUsers;
+    private final boolean cached;
+    private final Map<Long, Map<Long, AtomicInteger>> countsByUser = new ConcurrentHashMap<>();
+
+    public UnreadCounterService(ConversationSummaryRepository conversationSummaryRepository,
+                                ClusterMessagingService clusterMessagingService,
+                                @Value("${app.chat.unread.max-users:50000}") int maxUsers,
+                                @Value("${app.cluster.fanout:local}") String clusterFanout) {
+        this.conversationSummaryRepository = conversationSummaryRepository;
+        this.clusterMessagingService = clusterMessagingService;
+        this.maxUsers = maxUsers;
+        this.cached = "local".equals(clusterFanout);
+    }
+
+    public int getTotalUnread(Long userId) {
+        return total(countsFor(userId));
+    }
+
+    /** Loads the receiver's counts, if not cached, before a message to them is persisted. */
+    public void preload(Long receiverId) {
+        if (receiverId != null && cached) {
+            countsFor(receiverId);
+        }
+    }
+
+    /** Records a message delivered to the receiver and pushes the new counts. */
+    public void onMessageSent(Long receiverId, Long rideId) {
+        if (receiverId == null || rideId == null) {
+            return;
+        }
+        // Atomic with eviction: the increment lands in the cached counts or not at all
+        countsByUser.computeIfPresent(receiverId, (id, counts) -> {
+            counts.computeIfAbsent(rideId, ride -> new AtomicInteger()).incrementAndGet();
+            return counts;
+        });
+        Map<Long, AtomicInteger> counts = countsFor(receiverId);
+        AtomicInteger rideCount = counts.get(rideId);
+        push(receiverId, rideId, rideCount != null ? rideCount.get() : 0, total(counts));
+    }
+
+    /** Clears the user's unread count for the ride and pushes the new counts. */
+    public void onRideRead(Long userId, Long rideId) {
+        Map<Long, AtomicInteger> counts = countsFor(userId);
+        AtomicInteger count = counts.remove(rideId);
+        // Uncached counts were reloaded after the reset, so the ride's old count is unknown
+        if (!cached || (count != null && count.get() > 0)) {
+            push(userId, rideId, 0, total(counts));
+        }
+    }
+
+    private Map<Long, AtomicInteger> countsFor(Long userId) {
+        if (!cached) {
+            return loadCounts(userId);
+        }
+        Map<Long, AtomicInteger> counts = countsByUser.get(userId);
+        if (counts != null) {
+            return counts;
+        }
+        if (countsByUser.size() >= maxUsers) {
+            Iterator<Long> cached = countsByUser.keySet().iterator();
+            if (cached.hasNext()) {
+                countsByUser.remove(cached.next());
+            }
+        }
+        return countsByUser.computeIfAbsent(userId, this::loadCounts);
+    }
+
+    private static int total(Map<Long, AtomicInteger> counts) {
+        int total = 0;
+        for (AtomicInteger count : counts.values()) {
+            total += count.get();
+        }
+        return total;
+    }
+
+    private Map<Long, AtomicInteger> loadCounts(Long userId) {
+        Map<Long, AtomicInteger> counts = new ConcurrentHashMap<>();
+        for (Object[] row : conversationSummaryRepository.countUnreadByRide(userId)) {
+            counts.put((Long) row[0], new AtomicInteger(((Number) row[1]).intValue()));
+        }
+        return counts;
+    }
+
+    private void push(Long userId, Long rideId, int rideCount, int total) {
+        Map<String, Object> update = new HashMap<>();
+        update.put("type", "unread_count");
+        update.put("rideId", rideId);
+        update.put("rideCount", rideCount);
+        update.put("count", total);
+        update.put("hasUnread", total > 0);
+        try {
+            // Only the newest count per ride matters to a client that is behind
+            clusterMessagingService.convertAndSendToUser(userId.toString(), "/queue/unread", update, "unread:" + rideId);
+        } catch (Exception e) {
+            log.error("Error pushing unread count to user {}: {}", userId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.viola.server_side.service;
+
+import com.viola.server_side.dto.UserDto;
+
+/** Published by {@link UserService} on every node when a user's displayed profile (name or photo) changes. */
+public record UserProfileChangedEvent(UserDto user) {
+}
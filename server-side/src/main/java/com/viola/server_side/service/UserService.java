@@ -6,6 +6,7 @@ import com.viola.server_side.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -13,16 +14,22 @@ import java.util.Optional;
 public class UserService {
     
     private final UserRepository userRepository;
+    private final ClusterEventRelay clusterEventRelay;
     
     public User createOrUpdateUser(String email, String name, String photoUrl, String googleId) {
         Optional<User> existingUser = userRepository.findByEmail(email);
         
         if (existingUser.isPresent()) {
             User user = existingUser.get();
+            boolean profileChanged = !Objects.equals(user.getName(), name) || !Objects.equals(user.getPhotoUrl(), photoUrl);
             user.setName(name);
             user.setPhotoUrl(photoUrl);
             user.setGoogleId(googleId);
-            return userRepository.save(user);
+            User savedUser = userRepository.save(user);
+            if (profileChanged) {
+                clusterEventRelay.publish(new UserProfileChangedEvent(convertToDto(savedUser)));
+            }
+            return savedUser;
         } else {
             // Check if email is from VIT domain
             if (!email.endsWith("@vit.ac.in") && !email.endsWith("@vitstudent.ac.in")) {
@@ -0,0 +1,25 @@
+-- One-time backfill of conversation_summary from existing messages, recorded in db_backfills. The
+-- marker, not an empty table, gates it: rows upserted by live sends must not stop the backfill.
+CREATE TABLE IF NOT EXISTS db_backfills (
+    name varchar(100) PRIMARY KEY,
+    applied_at timestamp NOT NULL DEFAULT now()
+);
+INSERT INTO conversation_summary (id, user_id, partner_id, ride_id, last_message_id, last_message, last_sender_id, last_message_at, unread_count)
+SELECT nextval('conversation_summary_seq'), v.user_id, v.partner_id, v.ride_id, v.id, v.content, v.sender_id, v.created_at, v.unread_count
+FROM (
+    SELECT DISTINCT ON (p.user_id, p.ride_id, p.partner_id)
+           p.user_id, p.partner_id, p.ride_id, p.id, p.content, p.sender_id, p.created_at,
+           count(*) FILTER (WHERE p.user_id = p.receiver_id AND p.is_read = false)
+               OVER (PARTITION BY p.user_id, p.ride_id, p.partner_id) AS unread_count
+    FROM (
+        SELECT m.id, m.content, m.sender_id, m.receiver_id, m.ride_id, m.is_read, m.created_at, m.sender_id AS user_id, m.receiver_id AS partner_id
+        FROM messages m WHERE m.ride_id IS NOT NULL AND m.sender_id <> m.receiver_id
+        UNION ALL
+        SELECT m.id, m.content, m.sender_id, m.receiver_id, m.ride_id, m.is_read, m.created_at, m.receiver_id AS user_id, m.sender_id AS partner_id
+        FROM messages m WHERE m.ride_id IS NOT NULL AND m.sender_id <> m.receiver_id
+    ) p
+    ORDER BY p.user_id, p.ride_id, p.partner_id, p.created_at DESC, p.id DESC
+) v
+WHERE NOT EXISTS (SELECT 1 FROM db_backfills WHERE name = 'conversation-summary')
+ON CONFLICT (user_id, ride_id, partner_id) DO NOTHING;
+INSERT INTO db_backfills (name) VALUES ('conversation-summary') ON CONFLICT (name) DO NOTHING;
@@ -0,0 +1,14 @@
+-- Move ids from IDENTITY columns to pooled sequences (INCREMENT BY 50, matching allocationSize)
+-- so Hibernate can batch inserts. Sequences are only ever moved forward past existing ids.
+CREATE SEQUENCE IF NOT EXISTS messages_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS rides_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS users_seq START WITH 1 INCREMENT BY 50;
+SELECT setval('messages_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM messages))
+WHERE (SELECT last_value FROM messages_seq) < (SELECT COALESCE(MAX(id), 0) + 50 FROM messages);
+SELECT setval('rides_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM rides))
+WHERE (SELECT last_value FROM rides_seq) < (SELECT COALESCE(MAX(id), 0) + 50 FROM rides);
+SELECT setval('users_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM users))
+WHERE (SELECT last_value FROM users_seq) < (SELECT COALESCE(MAX(id), 0) + 50 FROM users);
+ALTER TABLE messages ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE rides ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE users ALTER COLUMN id DROP IDENTITY IF EXISTS;
@@ -0,0 +1,24 @@
+-- Seed read watermarks from the legacy is_read flags, once, recorded in db_backfills
+CREATE TABLE IF NOT EXISTS db_backfills (
+    name varchar(100) PRIMARY KEY,
+    applied_at timestamp NOT NULL DEFAULT now()
+);
+INSERT INTO read_watermarks (id, user_id, ride_id, last_read_message_id, last_read_at)
+SELECT nextval('read_watermarks_seq'), r.receiver_id, r.ride_id, r.id, r.created_at
+FROM (
+    SELECT DISTINCT ON (m.receiver_id, m.ride_id) m.receiver_id, m.ride_id, m.id, m.created_at
+    FROM messages m
+    WHERE m.is_read = true AND m.ride_id IS NOT NULL
+    ORDER BY m.receiver_id, m.ride_id, m.created_at DESC, m.id DESC
+) r
+WHERE NOT EXISTS (SELECT 1 FROM db_backfills WHERE name = 'read-watermarks')
+ON CONFLICT (user_id, ride_id) DO NOTHING;
+INSERT INTO db_backfills (name) VALUES ('read-watermarks') ON CONFLICT (name) DO NOTHING;
+-- Watermarks written before last_read_at existed take the position of the message they point at
+UPDATE read_watermarks w SET last_read_at = m.created_at
+FROM messages m
+WHERE w.last_read_at IS NULL AND m.id = w.last_read_message_id;
+-- The ride-leading (created_at, id) indexes cover every lookup the single-column index served, and
+-- watermarks compare on (created_at, id), so the id-ordered receiver index has no readers left
+DROP INDEX IF EXISTS idx_messages_ride;
+DROP INDEX IF EXISTS idx_messages_ride_receiver_id;
@@ -0,0 +1,2 @@
+-- Cluster-wide ride version behind the ride ETags when app.cluster.fanout is not local
+CREATE SEQUENCE IF NOT EXISTS ride_version_seq;
@@ -0,0 +1,9 @@
+-- Backfill rides.departure_at for rows created before the column existed
+UPDATE rides SET departure_at = to_timestamp(ride_date || ' ' || upper(ride_time), 'YYYY-MM-DD HH12:MI AM')::timestamp
+WHERE departure_at IS NULL
+  AND ride_date ~ '^\d{4}-\d{2}-\d{2}$'
+  AND ride_time ~* '^\d{1,2}:\d{2} ?(AM|PM)$';
+UPDATE rides SET departure_at = to_timestamp(ride_date || ' ' || ride_time, 'YYYY-MM-DD HH24:MI')::timestamp
+WHERE departure_at IS NULL
+  AND ride_date ~ '^\d{4}-\d{2}-\d{2}$'
+  AND ride_time ~ '^\d{1,2}:\d{2}$';
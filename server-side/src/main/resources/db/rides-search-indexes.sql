@@ -0,0 +1,16 @@
+-- Trigram indexes backing /api/rides/search (ILIKE '%term%' and similarity matching). Without the
+-- privilege to create pg_trgm the indexes are skipped and RideService searches with ILIKE alone,
+-- which has no fuzzy matching and scans the active rides.
+DO $$
+BEGIN
+    CREATE EXTENSION IF NOT EXISTS pg_trgm;
+EXCEPTION WHEN insufficient_privilege THEN
+    RAISE WARNING 'pg_trgm not installed, ride search indexes skipped: %', SQLERRM;
+END $$;
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm') THEN
+        CREATE INDEX IF NOT EXISTS idx_rides_pickup_trgm ON rides USING gin (pickup gin_trgm_ops);
+        CREATE INDEX IF NOT EXISTS idx_rides_destination_trgm ON rides USING gin (destination gin_trgm_ops);
+    END IF;
+END $$;
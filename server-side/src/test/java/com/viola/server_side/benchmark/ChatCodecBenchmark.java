@@ -0,0 +1,97 @@
+package com.viola.server_side.benchmark;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.viola.server_side.config.PayloadCodecInterceptor;
+import com.viola.server_side.dto.ChatMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Bytes per chat frame body and encode/decode cost for the payload formats:
+ * {@code json-legacy} (every field, including the duplicated timestamp and sender name/photo),
+ * {@code json} (the compact frame now sent) and {@code cbor} (the same frame, binary).
+ * Setup prints each format's size raw and deflated on its own, roughly what permessage-deflate
+ * sends without context takeover; with context takeover repeated keys compress further.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatCodecBenchmark {
+
+    @Param({"json-legacy", "json", "cbor"})
+    private String format;
+
+    private ObjectMapper mapper;
+    private ChatMessage message;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        LocalDateTime createdAt = LocalDateTime.of(2026, 10, 17, 18, 30, 5, 123_456_000);
+        message = new ChatMessage(1_000_000_123L, "CHAT", "Leaving from the main gate in 10 minutes, see you there",
+                "42", null, null, "7", 1234L, null, createdAt, null);
+        if ("json-legacy".equals(format)) {
+            // The frame before compaction: client-supplied names and photo echoed, timestamp duplicated
+            mapper = JsonMapper.builder().disable(MapperFeature.USE_ANNOTATIONS).build();
+            message.setSenderName("Aarav Sharma");
+            message.setSenderPhotoUrl("https://lh3.googleusercontent.com/a/ACg8ocJ1x2y3z4AbCdEfGhIjKlMnOpQrStUvWxYz=s96-c");
+            message.setTimestamp(createdAt);
+        } else if ("json".equals(format)) {
+            mapper = new ObjectMapper();
+        } else {
+            mapper = PayloadCodecInterceptor.cborMapper();
+        }
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        encoded = mapper.writeValueAsBytes(message);
+        System.out.printf("%n%s: %d bytes, %d deflated%n", format, encoded.length, deflatedLength(encoded));
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return mapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public ChatMessage decode() throws IOException {
+        return mapper.readValue(encoded, ChatMessage.class);
+    }
+
+    private static int deflatedLength(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] buffer = new byte[data.length + 64];
+        int length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+        deflater.end();
+        return length;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ChatCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
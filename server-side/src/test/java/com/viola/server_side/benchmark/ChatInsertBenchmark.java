@@ -0,0 +1,336 @@
+package com.viola.server_side.benchmark;
+
+import com.viola.server_side.service.ChatPersistencePipeline;
+import com.viola.server_side.service.ConversationSummaryWriter;
+import com.viola.server_side.service.MessageIdAllocator;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Message insert throughput through the application's own write paths, before and after the move
+ * from IDENTITY ids to pooled sequences, at the same number of messages per commit on both sides.
+ *
+ * <ul>
+ *   <li>{@code hibernateIdentity} / {@code hibernatePooledSequence} - entities persisted by Hibernate
+ *   with the old IDENTITY mapping and the current {@code messages_seq} mapping (allocationSize 50),
+ *   under the settings {@code HibernateBatchingConfig} applies. IDENTITY cannot batch, so every
+ *   persist is its own INSERT round trip</li>
+ *   <li>{@code pipelineSerialIds} / {@code pipelinePooledIds} - the chat path:
+ *   {@link ChatPersistencePipeline} fed by the old allocator (one nextval per id on the IDENTITY
+ *   column's sequence, fetched 100 at a time) and by {@link MessageIdAllocator}. Each commit is one
+ *   pipeline batch; conversation summaries are the same on both sides and are left out</li>
+ * </ul>
+ *
+ * <p>Uses an in-memory H2 database by default. Pass {@code -Dbench.jdbc.url=jdbc:postgresql://...}
+ * (plus {@code bench.jdbc.user} / {@code bench.jdbc.password}) to measure against PostgreSQL, where
+ * the per-row round trip dominates. The benchmark creates and drops its own {@code messages} table
+ * and {@code messages_seq}, so point it at a scratch database; setup fails if they already exist.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatInsertBenchmark {
+
+    private static final int MESSAGES_PER_INVOCATION = 200;
+    private static final int HIBERNATE_BATCH_SIZE = 50;
+    private static final int SERIAL_ID_BLOCK = 100;
+
+    @Param({"1", "50"})
+    private int messagesPerCommit;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private SessionFactory sessionFactory;
+    private MeterRegistry meterRegistry;
+    private ConversationSummaryWriter summaryWriter;
+    private MessageIdAllocator pooledIds;
+    private SerialIdAllocator serialIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getProperty("bench.jdbc.url", "jdbc:h2:mem:chat_bench;MODE=PostgreSQL;DB_CLOSE_DELAY=-1"));
+        dataSource.setUsername(System.getProperty("bench.jdbc.user", "sa"));
+        dataSource.setPassword(System.getProperty("bench.jdbc.password", ""));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        jdbcTemplate.execute("CREATE TABLE messages (id BIGINT PRIMARY KEY, content TEXT NOT NULL, " +
+                "sender_id BIGINT NOT NULL, receiver_id BIGINT NOT NULL, ride_id BIGINT, is_read BOOLEAN, " +
+                "created_at TIMESTAMP NOT NULL)");
+        // Where db/pooled-id-sequences.sql leaves an empty table's sequence
+        jdbcTemplate.execute("CREATE SEQUENCE messages_seq START WITH 100 INCREMENT BY 50");
+        jdbcTemplate.execute("CREATE TABLE bench_identity_messages (" +
+                "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, content TEXT NOT NULL, " +
+                "sender_id BIGINT NOT NULL, receiver_id BIGINT NOT NULL, ride_id BIGINT, is_read BOOLEAN, " +
+                "created_at TIMESTAMP NOT NULL)");
+        // Stands in for the IDENTITY column's own sequence; far above messages_seq so the ids never meet
+        jdbcTemplate.execute("CREATE SEQUENCE bench_serial_messages_seq START WITH 1000000000000");
+
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(IdentityMessage.class)
+                .addAnnotatedClass(PooledMessage.class)
+                .setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, String.valueOf(HIBERNATE_BATCH_SIZE))
+                .setProperty(AvailableSettings.ORDER_INSERTS, "true")
+                .setProperty(AvailableSettings.ORDER_UPDATES, "true");
+        configuration.getProperties().put(AvailableSettings.DATASOURCE, dataSource);
+        sessionFactory = configuration.buildSessionFactory();
+
+        meterRegistry = new SimpleMeterRegistry();
+        summaryWriter = new ConversationSummaryWriter(jdbcTemplate) {
+            @Override
+            public void apply(List<ChatPersistencePipeline.PendingMessage> messages) {
+            }
+        };
+        pooledIds = new MessageIdAllocator(jdbcTemplate);
+        serialIds = new SerialIdAllocator(jdbcTemplate);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+        jdbcTemplate.execute("DROP TABLE messages");
+        jdbcTemplate.execute("DROP SEQUENCE messages_seq");
+        jdbcTemplate.execute("DROP TABLE bench_identity_messages");
+        jdbcTemplate.execute("DROP SEQUENCE bench_serial_messages_seq");
+        dataSource.close();
+    }
+
+    /** Before: Hibernate persist with {@code GenerationType.IDENTITY}. */
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES_PER_INVOCATION)
+    public void hibernateIdentity() {
+        for (int start = 0; start < MESSAGES_PER_INVOCATION; start += messagesPerCommit) {
+            int first = start;
+            sessionFactory.inTransaction(session -> {
+                for (int i = first; i < first + messagesPerCommit; i++) {
+                    session.persist(new IdentityMessage(i));
+                }
+            });
+        }
+    }
+
+    /** After: Hibernate persist with the pooled {@code messages_seq} and JDBC batching. */
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES_PER_INVOCATION)
+    public void hibernatePooledSequence() {
+        for (int start = 0; start < MESSAGES_PER_INVOCATION; start += messagesPerCommit) {
+            int first = start;
+            sessionFactory.inTransaction(session -> {
+                for (int i = first; i < first + messagesPerCommit; i++) {
+                    session.persist(new PooledMessage(i));
+                }
+            });
+        }
+    }
+
+    /** Before: the chat pipeline with ids drawn one nextval at a time from the IDENTITY sequence. */
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES_PER_INVOCATION)
+    public void pipelineSerialIds() throws InterruptedException {
+        writeThroughPipeline(serialIds::nextId);
+    }
+
+    /** After: the chat pipeline with ids from {@link MessageIdAllocator}. */
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES_PER_INVOCATION)
+    public void pipelinePooledIds() throws InterruptedException {
+        writeThroughPipeline(pooledIds::nextId);
+    }
+
+    private void writeThroughPipeline(LongSupplier ids) throws InterruptedException {
+        if (messagesPerCommit == 1) {
+            // SYNC writes each message in its own transaction on the calling thread
+            ChatPersistencePipeline pipeline = pipeline(ChatPersistencePipeline.Mode.SYNC);
+            for (int i = 0; i < MESSAGES_PER_INVOCATION; i++) {
+                pipeline.submit(message(ids.getAsLong(), i));
+            }
+            return;
+        }
+        for (int start = 0; start < MESSAGES_PER_INVOCATION; start += messagesPerCommit) {
+            // Queue the whole group before the writer starts so it drains exactly one batch
+            ChatPersistencePipeline pipeline = pipeline(ChatPersistencePipeline.Mode.ASYNC);
+            List<CompletableFuture<Void>> persisted = new ArrayList<>(messagesPerCommit);
+            for (int i = start; i < start + messagesPerCommit; i++) {
+                ChatPersistencePipeline.PendingMessage message = message(ids.getAsLong(), i);
+                pipeline.submit(message);
+                persisted.add(message.persisted());
+            }
+            pipeline.start();
+            CompletableFuture.allOf(persisted.toArray(CompletableFuture[]::new)).join();
+            pipeline.shutdown();
+        }
+    }
+
+    private ChatPersistencePipeline pipeline(ChatPersistencePipeline.Mode mode) {
+        return new ChatPersistencePipeline(jdbcTemplate, transactionTemplate, summaryWriter, meterRegistry, mode,
+                messagesPerCommit, messagesPerCommit, 1, 1000, 5000);
+    }
+
+    private static ChatPersistencePipeline.PendingMessage message(long id, int i) {
+        return new ChatPersistencePipeline.PendingMessage(id, content(i), senderId(i), receiverId(i), rideId(i),
+                LocalDateTime.now(), new CompletableFuture<>());
+    }
+
+    private static String content(int i) {
+        return "Is the ride still available? #" + i;
+    }
+
+    private static long senderId(int i) {
+        return 1 + i % 7;
+    }
+
+    private static long receiverId(int i) {
+        return 100 + i % 5;
+    }
+
+    private static long rideId(int i) {
+        return 1000 + i % 3;
+    }
+
+    /** The allocator as it was on the IDENTITY column: a block of single nextval calls per round trip. */
+    private static final class SerialIdAllocator {
+
+        private final JdbcTemplate jdbcTemplate;
+        private final Deque<Long> reserved = new ArrayDeque<>();
+
+        SerialIdAllocator(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        synchronized long nextId() {
+            if (reserved.isEmpty()) {
+                reserved.addAll(jdbcTemplate.queryForList(
+                        "SELECT nextval('bench_serial_messages_seq') FROM generate_series(1, ?)", Long.class,
+                        SERIAL_ID_BLOCK));
+            }
+            return reserved.removeFirst();
+        }
+    }
+
+    @Entity
+    @Table(name = "bench_identity_messages")
+    public static class IdentityMessage {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        private Long id;
+
+        @Column(columnDefinition = "TEXT", nullable = false)
+        private String content;
+
+        @Column(name = "sender_id", nullable = false)
+        private long senderId;
+
+        @Column(name = "receiver_id", nullable = false)
+        private long receiverId;
+
+        @Column(name = "ride_id")
+        private Long rideId;
+
+        @Column(name = "is_read")
+        private Boolean isRead = false;
+
+        @Column(name = "created_at", nullable = false)
+        private LocalDateTime createdAt;
+
+        protected IdentityMessage() {
+        }
+
+        IdentityMessage(int i) {
+            this.content = content(i);
+            this.senderId = senderId(i);
+            this.receiverId = receiverId(i);
+            this.rideId = rideId(i);
+            this.createdAt = LocalDateTime.now();
+        }
+    }
+
+    /** Mapped like {@link com.viola.server_side.entity.Message}, with the ids it uses today. */
+    @Entity
+    @Table(name = "messages")
+    public static class PooledMessage {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "messages_seq")
+        @SequenceGenerator(name = "messages_seq", sequenceName = "messages_seq", allocationSize = 50)
+        private Long id;
+
+        @Column(columnDefinition = "TEXT", nullable = false)
+        private String content;
+
+        @Column(name = "sender_id", nullable = false)
+        private long senderId;
+
+        @Column(name = "receiver_id", nullable = false)
+        private long receiverId;
+
+        @Column(name = "ride_id")
+        private Long rideId;
+
+        @Column(name = "is_read")
+        private Boolean isRead = false;
+
+        @Column(name = "created_at", nullable = false)
+        private LocalDateTime createdAt;
+
+        protected PooledMessage() {
+        }
+
+        PooledMessage(int i) {
+            this.content = content(i);
+            this.senderId = senderId(i);
+            this.receiverId = receiverId(i);
+            this.rideId = rideId(i);
+            this.createdAt = LocalDateTime.now();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ChatInsertBenchmark.class.getSimpleName()).build()).run();
+    }
+}
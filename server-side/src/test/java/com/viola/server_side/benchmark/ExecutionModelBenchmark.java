@@ -0,0 +1,109 @@
+package com.viola.server_side.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a burst of STOMP deliveries while the same channel executor is busy with blocking
+ * database work, for the channel pool sizes {@code app.websocket.inbound-pool-size} can select.
+ * {@code dbLoad} tasks stay in flight throughout, each taking one of {@code poolSize} permits (the
+ * connection pool) for a 5 ms query. With Spring's default pool (2 x CPUs, {@code channelThreads} 0)
+ * those tasks occupy the threads and deliveries queue behind them; a larger pool leaves threads free
+ * for deliveries until the load outgrows it too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutionModelBenchmark {
+
+    private static final int DELIVERIES = 100;
+    private static final long QUERY_MILLIS = 5;
+
+    @Param({"0", "64"})
+    private int channelThreads;
+
+    @Param({"50", "500"})
+    private int dbLoad;
+
+    @Param({"10"})
+    private int poolSize;
+
+    private ExecutorService executor;
+    private Semaphore connections;
+    private volatile boolean running;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(
+                channelThreads > 0 ? channelThreads : 2 * Runtime.getRuntime().availableProcessors());
+        connections = new Semaphore(poolSize, true);
+        running = true;
+        for (int i = 0; i < dbLoad; i++) {
+            executor.execute(this::query);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException {
+        running = false;
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public void deliveryBurst() throws InterruptedException {
+        CountDownLatch delivered = new CountDownLatch(DELIVERIES);
+        for (int i = 0; i < DELIVERIES; i++) {
+            executor.execute(delivered::countDown);
+        }
+        delivered.await();
+    }
+
+    /** A blocking query under the pool's permits, resubmitted so the load stays constant. */
+    private void query() {
+        if (!running) {
+            return;
+        }
+        try {
+            connections.acquire();
+            try {
+                Thread.sleep(QUERY_MILLIS);
+            } finally {
+                connections.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (running) {
+            executor.execute(this::query);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ExecutionModelBenchmark.class.getSimpleName()).build()).run();
+    }
+}
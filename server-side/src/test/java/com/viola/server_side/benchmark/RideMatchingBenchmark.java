@@ -0,0 +1,89 @@
+package com.viola.server_side.benchmark;
+
+import com.viola.server_side.dto.RideDto;
+import com.viola.server_side.dto.RideMatchDto;
+import com.viola.server_side.dto.RideMatchRequest;
+import com.viola.server_side.entity.GenderPreference;
+import com.viola.server_side.service.RideCatalog;
+import com.viola.server_side.service.RideMatchingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route matching latency as the number of active rides grows.
+ * Run with {@code mvn test-compile} and then this class's {@code main} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RideMatchingBenchmark {
+
+    private static final String[] PLACES = {
+        "VIT Main Gate", "Katpadi Junction", "Chennai Airport", "Bangalore Majestic", "Vellore Bus Stand",
+        "Chennai Central", "Kempegowda Airport", "Tirupati", "Arakkonam Junction", "Ranipet", "Gandhi Nagar",
+        "CMC Hospital", "Green Circle", "Sathuvachari", "Chittoor", "Koyambedu"
+    };
+
+    @Param({"1000", "10000", "50000"})
+    private int activeRides;
+
+    private RideMatchingService matchingService;
+    private RideMatchRequest request;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        LocalDateTime now = LocalDateTime.now();
+        List<RideDto> rides = new ArrayList<>(activeRides);
+        for (long id = 1; id <= activeRides; id++) {
+            RideDto ride = new RideDto();
+            ride.setId(id);
+            ride.setPickup(PLACES[random.nextInt(PLACES.length)]);
+            ride.setDestination(PLACES[random.nextInt(PLACES.length)]);
+            ride.setDepartureAt(now.plusMinutes(random.nextInt(7 * 24 * 60)));
+            ride.setPrice(String.valueOf(100 + random.nextInt(1900)));
+            ride.setGenderPreference(GenderPreference.values()[random.nextInt(GenderPreference.values().length)]);
+            ride.setIsActive(true);
+            ride.setCreatedAt(now.minusMinutes(id));
+            rides.add(ride);
+        }
+
+        RideCatalog catalog = new RideCatalog(activeRides, 0.01, new SimpleMeterRegistry());
+        catalog.rebuild(() -> rides);
+        matchingService = new RideMatchingService(catalog, null, 0.4, 0.4, 0.15, 0.05, 50);
+
+        request = new RideMatchRequest("Katpadi Jn", "Chennai Airport", now, now.plusHours(48),
+                GenderPreference.ANYONE, 1500L, 10);
+    }
+
+    @Benchmark
+    public List<RideMatchDto> match() {
+        return matchingService.match(request);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RideMatchingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
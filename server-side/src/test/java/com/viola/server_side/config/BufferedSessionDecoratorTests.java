@@ -0,0 +1,206 @@
+package com.viola.server_side.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BufferedSessionDecoratorTests {
+
+    private static final int NO_TIME_LIMIT = 60_000;
+    private static final int NO_SIZE_LIMIT = 1 << 20;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<OutboundSessionPolicy> policies = new ArrayList<>();
+    // The first frame written to a session holds its writer until released
+    private final CountDownLatch writeReleased = new CountDownLatch(1);
+
+    @AfterEach
+    void shutdown() {
+        writeReleased.countDown();
+        policies.forEach(OutboundSessionPolicy::destroy);
+    }
+
+    @Test
+    void coalesceReplacesQueuedFramesWithTheSameKey() throws IOException {
+        Client client = new Client("s1");
+        WebSocketSession session = policy(OutboundSessionPolicy.OverflowPolicy.COALESCE, 100)
+                .decorate(client.session, NO_TIME_LIMIT, NO_SIZE_LIMIT);
+
+        session.sendMessage(frame("first", null));
+        client.awaitBlocked();
+        session.sendMessage(frame("unread 1", "unread:42"));
+        session.sendMessage(frame("chat", null));
+        session.sendMessage(frame("unread 2", "unread:42"));
+        writeReleased.countDown();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> client.bodies().size() == 3);
+        assertThat(client.bodies()).containsExactly("first", "chat", "unread 2");
+        assertThat(discarded("coalesced")).isEqualTo(1);
+    }
+
+    @Test
+    void dropOldestOnlyDiscardsCoalescableFrames() throws IOException {
+        Client client = new Client("s1");
+        WebSocketSession session = policy(OutboundSessionPolicy.OverflowPolicy.DROP_OLDEST, 2)
+                .decorate(client.session, NO_TIME_LIMIT, NO_SIZE_LIMIT);
+
+        session.sendMessage(frame("first", null));
+        client.awaitBlocked();
+        session.sendMessage(frame("unread", "unread:42"));
+        session.sendMessage(frame("chat 1", null));
+        session.sendMessage(frame("chat 2", null));
+        assertThat(discarded("overflow")).isEqualTo(1);
+
+        // Only chat frames are queued now; the next one cannot be made room for
+        assertThatThrownBy(() -> session.sendMessage(frame("chat 3", null)))
+                .isInstanceOf(SessionLimitExceededException.class);
+        assertThat(disconnects("buffer")).isEqualTo(1);
+    }
+
+    @Test
+    void disconnectPolicyClosesOnOverflow() throws IOException {
+        Client client = new Client("s1");
+        WebSocketSession session = policy(OutboundSessionPolicy.OverflowPolicy.DISCONNECT, 1)
+                .decorate(client.session, NO_TIME_LIMIT, NO_SIZE_LIMIT);
+
+        session.sendMessage(frame("first", null));
+        client.awaitBlocked();
+        session.sendMessage(frame("unread", "unread:42"));
+
+        assertThatThrownBy(() -> session.sendMessage(frame("unread", "unread:42")))
+                .isInstanceOf(SessionLimitExceededException.class);
+        assertThat(discarded("coalesced")).isZero();
+    }
+
+    @Test
+    void stalledSessionIsClosedOnceBySweep() throws IOException {
+        Client client = new Client("s1");
+        CountDownLatch closeReleased = new CountDownLatch(1);
+        // Closing blocks behind the stalled write, as it does on a real socket
+        doAnswer(invocation -> closeReleased.await(5, TimeUnit.SECONDS)).when(client.session).close(any(CloseStatus.class));
+        OutboundSessionPolicy policy = policy(OutboundSessionPolicy.OverflowPolicy.DISCONNECT, 100);
+        WebSocketSession session = policy.decorate(client.session, 50, NO_SIZE_LIMIT);
+
+        session.sendMessage(frame("first", null));
+        client.awaitBlocked();
+        await().atMost(Duration.ofSeconds(5)).until(() -> ((BufferedSessionDecorator) session).isSendTimeExceeded());
+        policy.disconnectStalledSessions();
+        policy.disconnectStalledSessions();
+
+        verify(client.session, timeout(5000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        policy.disconnectStalledSessions();
+        closeReleased.countDown();
+        verify(client.session, times(1)).close(any(CloseStatus.class));
+        assertThat(disconnects("time")).isEqualTo(1);
+    }
+
+    @Test
+    void sendPastTheTimeLimitDisconnects() throws IOException {
+        Client client = new Client("s1");
+        WebSocketSession session = policy(OutboundSessionPolicy.OverflowPolicy.COALESCE, 100)
+                .decorate(client.session, 50, NO_SIZE_LIMIT);
+
+        session.sendMessage(frame("first", null));
+        client.awaitBlocked();
+        await().atMost(Duration.ofSeconds(5)).until(() -> ((BufferedSessionDecorator) session).isSendTimeExceeded());
+
+        assertThatThrownBy(() -> session.sendMessage(frame("late", null)))
+                .isInstanceOf(SessionLimitExceededException.class);
+        assertThat(disconnects("time")).isEqualTo(1);
+    }
+
+    @Test
+    void sessionBeyondTheWriterQueueIsDisconnected() throws IOException {
+        OutboundSessionPolicy policy = new OutboundSessionPolicy(OutboundSessionPolicy.OverflowPolicy.DISCONNECT,
+                100, 1, 1, meterRegistry);
+        policies.add(policy);
+        Client busy = new Client("s1");
+        policy.decorate(busy.session, NO_TIME_LIMIT, NO_SIZE_LIMIT).sendMessage(frame("first", null));
+        busy.awaitBlocked();
+        // The only writer is stuck on s1; s2's drain takes the one queue slot
+        policy.decorate(new Client("s2").session, NO_TIME_LIMIT, NO_SIZE_LIMIT).sendMessage(frame("queued", null));
+
+        WebSocketSession rejected = policy.decorate(new Client("s3").session, NO_TIME_LIMIT, NO_SIZE_LIMIT);
+        assertThatThrownBy(() -> rejected.sendMessage(frame("rejected", null)))
+                .isInstanceOf(SessionLimitExceededException.class);
+        assertThat(disconnects("writers")).isEqualTo(1);
+    }
+
+    private OutboundSessionPolicy policy(OutboundSessionPolicy.OverflowPolicy overflowPolicy, int maxQueuedMessages) {
+        OutboundSessionPolicy policy = new OutboundSessionPolicy(overflowPolicy, maxQueuedMessages, 2, 100, meterRegistry);
+        policies.add(policy);
+        return policy;
+    }
+
+    private double discarded(String reason) {
+        return meterRegistry.counter("viola.websocket.outbound.discarded", "reason", reason).count();
+    }
+
+    private double disconnects(String reason) {
+        return meterRegistry.counter("viola.websocket.outbound.disconnects", "reason", reason).count();
+    }
+
+    private static TextMessage frame(String body, String coalesceKey) {
+        String headers = "MESSAGE\ndestination:/user/queue/unread\n"
+                + (coalesceKey != null ? "coalesce-key:" + coalesceKey + "\n" : "");
+        return new TextMessage(headers + "\n" + body + "\u0000");
+    }
+
+    /** The underlying socket; its first write blocks until the test releases it. */
+    private class Client {
+
+        final WebSocketSession session = mock(WebSocketSession.class);
+        final List<String> frames = new CopyOnWriteArrayList<>();
+        final CountDownLatch blocked = new CountDownLatch(1);
+
+        Client(String id) throws IOException {
+            when(session.getId()).thenReturn(id);
+            when(session.isOpen()).thenReturn(true);
+            doAnswer(invocation -> {
+                WebSocketMessage<?> message = invocation.getArgument(0);
+                frames.add((String) message.getPayload());
+                if (blocked.getCount() > 0) {
+                    blocked.countDown();
+                    writeReleased.await();
+                }
+                return null;
+            }).when(session).sendMessage(any());
+        }
+
+        void awaitBlocked() {
+            try {
+                assertThat(blocked.await(5, TimeUnit.SECONDS)).isTrue();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        List<String> bodies() {
+            return frames.stream().map(frame -> frame.substring(frame.indexOf("\n\n") + 2, frame.length() - 1)).toList();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.viola.server_side.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChatPersistencePipelineTests {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+    private final ConversationSummaryWriter summaryWriter = mock(ConversationSummaryWriter.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // Holds the writer thread inside its batch insert until released
+    private final CountDownLatch writerBlocked = new CountDownLatch(1);
+    private final CountDownLatch writerReleased = new CountDownLatch(1);
+    private ChatPersistencePipeline pipeline;
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        writerReleased.countDown();
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void failingMessageDoesNotFailItsBatch() {
+        pipeline = pipeline(ChatPersistencePipeline.Mode.ASYNC, 100, 5000);
+        // A message whose ride was deleted meanwhile fails every write that includes it
+        doThrow(new DataIntegrityViolationException("ride deleted"))
+                .when(summaryWriter).apply(argThat(batch -> batch.stream().anyMatch(message -> message.id() == 2)));
+
+        List<ChatPersistencePipeline.PendingMessage> messages = List.of(message(1), message(2), message(3));
+        messages.forEach(pipeline::submit);
+
+        assertThat(messages.get(0).persisted()).succeedsWithin(5, TimeUnit.SECONDS);
+        assertThat(messages.get(2).persisted()).succeedsWithin(5, TimeUnit.SECONDS);
+        assertThat(messages.get(1).persisted()).failsWithin(5, TimeUnit.SECONDS);
+        // Futures complete just before the counters move
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+            assertThat(count("viola.chat.persistence.messages", "persisted")).isEqualTo(2);
+            assertThat(count("viola.chat.persistence.messages", "failed")).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void fullQueueRunsTheWriteOnTheCaller() {
+        pipeline = pipeline(ChatPersistencePipeline.Mode.ASYNC, 1, 5000);
+        blockWriterThread();
+
+        pipeline.submit(message(1));
+        awaitWriterBlocked();
+        pipeline.submit(message(2));
+        ChatPersistencePipeline.PendingMessage overflow = message(3);
+        pipeline.submit(overflow);
+
+        assertThat(overflow.persisted()).isCompleted();
+        assertThat(meterRegistry.counter("viola.chat.persistence.caller.runs").count()).isEqualTo(1);
+    }
+
+    @Test
+    void callerRunFailureIsThrownToTheSender() {
+        pipeline = pipeline(ChatPersistencePipeline.Mode.SYNC, 1, 5000);
+        doThrow(new DataIntegrityViolationException("ride deleted")).when(summaryWriter).apply(any());
+
+        assertThatThrownBy(() -> pipeline.submit(message(1))).hasMessage("Failed to persist message");
+    }
+
+    @Test
+    void groupCommitTimeoutAcceptsTheQueuedMessage() {
+        pipeline = pipeline(ChatPersistencePipeline.Mode.GROUP_COMMIT, 100, 50);
+        blockWriterThread();
+        ChatPersistencePipeline.PendingMessage message = message(1);
+
+        pipeline.submit(message);
+
+        assertThat(message.persisted()).isNotDone();
+        assertThat(meterRegistry.counter("viola.chat.persistence.commit.timeouts").count()).isEqualTo(1);
+        writerReleased.countDown();
+        assertThat(message.persisted()).succeedsWithin(5, TimeUnit.SECONDS);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void blockWriterThread() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    if (Thread.currentThread().getName().equals("chat-persistence-writer")) {
+                        writerBlocked.countDown();
+                        writerReleased.await();
+                    }
+                    Collection<?> batch = invocation.getArgument(1);
+                    return new int[batch.size()][];
+                });
+    }
+
+    private void awaitWriterBlocked() {
+        try {
+            assertThat(writerBlocked.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private ChatPersistencePipeline pipeline(ChatPersistencePipeline.Mode mode, int queueCapacity, long commitTimeoutMs) {
+        ChatPersistencePipeline pipeline = new ChatPersistencePipeline(jdbcTemplate, transactionTemplate, summaryWriter,
+                meterRegistry, mode, queueCapacity, 200, 5, 20, commitTimeoutMs);
+        pipeline.start();
+        return pipeline;
+    }
+
+    private double count(String name, String result) {
+        return meterRegistry.counter(name, "result", result).count();
+    }
+
+    private static ChatPersistencePipeline.PendingMessage message(long id) {
+        return new ChatPersistencePipeline.PendingMessage(id, "message " + id, 1L, 2L, 42L,
+                LocalDateTime.now(), new CompletableFuture<>());
+    }
+}
@@ -0,0 +1,103 @@
+package com.viola.server_side.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ClusterEventRelay.class, RideVersionTracker.class, ClusterEventRelayTests.DeletedRides.class,
+        JacksonAutoConfiguration.class})
+class ClusterEventRelayTests {
+
+    @MockitoBean
+    private ClusterFanout clusterFanout;
+
+    @Autowired
+    private ClusterEventRelay relay;
+
+    @Autowired
+    private RideVersionTracker versions;
+
+    @Autowired
+    private DeletedRides deletedRides;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void clearDeletedRides() {
+        deletedRides.ids.clear();
+    }
+
+    @Test
+    void eventInsideTransactionIsRelayedAfterCommit() {
+        String before = versions.allRidesETag();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            relay.publish(new RideDeletedEvent(7L));
+            assertThat(deletedRides.ids).isEmpty();
+            verify(clusterFanout, never()).publish(any());
+        });
+
+        assertThat(deletedRides.ids).containsExactly(7L);
+        verify(clusterFanout, times(1)).publish(any());
+        // Listeners run once the transaction is over, so their own after-commit work applies at once
+        assertThat(versions.allRidesETag()).isNotEqualTo(before);
+    }
+
+    @Test
+    void eventInsideRolledBackTransactionIsDropped() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            relay.publish(new RideDeletedEvent(7L));
+            status.setRollbackOnly();
+        });
+
+        assertThat(deletedRides.ids).isEmpty();
+        verify(clusterFanout, never()).publish(any());
+    }
+
+    @Test
+    void eventOutsideTransactionIsRelayedAtOnce() {
+        relay.publish(new RideDeletedEvent(7L));
+
+        assertThat(deletedRides.ids).containsExactly(7L);
+        verify(clusterFanout, times(1)).publish(any());
+    }
+
+    @Component
+    static class DeletedRides {
+
+        final List<Long> ids = new CopyOnWriteArrayList<>();
+        private final RideVersionTracker versions;
+
+        DeletedRides(RideVersionTracker versions) {
+            this.versions = versions;
+        }
+
+        @EventListener
+        void onRideDeleted(RideDeletedEvent event) {
+            ids.add(event.rideId());
+            versions.bump();
+        }
+    }
+}
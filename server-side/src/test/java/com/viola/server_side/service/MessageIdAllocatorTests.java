@@ -0,0 +1,95 @@
+package com.viola.server_side.service;
+
+import org.hibernate.id.IdentifierGeneratorHelper;
+import org.hibernate.id.IntegralDataTypeHolder;
+import org.hibernate.id.enhanced.AccessCallback;
+import org.hibernate.id.enhanced.PooledOptimizer;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MessageIdAllocatorTests {
+
+    private static final int BLOCK = MessageIdAllocator.BLOCK_SIZE;
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    // messages_seq after pooled-id-sequences.sql: setval(50) on an empty table, INCREMENT BY 50
+    private final AtomicLong sequence = new AtomicLong(50);
+    private final MessageIdAllocator allocator = new MessageIdAllocator(jdbcTemplate);
+    // The optimizer Hibernate picks for the entity's allocationSize of 50, with its default initial value
+    private final PooledOptimizer hibernate = new PooledOptimizer(Long.class, BLOCK);
+
+    MessageIdAllocatorTests() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenAnswer(invocation -> sequence.addAndGet(BLOCK));
+        hibernate.injectInitialValue(1);
+    }
+
+    @Test
+    void takesTheSameBlockAsHibernateForTheSameSequenceValue() {
+        long allocatorFirst = allocator.nextId();
+        sequence.addAndGet(-BLOCK);
+        long hibernateFirst = hibernateId();
+
+        assertThat(allocatorFirst).isEqualTo(hibernateFirst).isEqualTo(51);
+    }
+
+    @Test
+    void interleavedAllocationsNeverOverlapHibernateIds() {
+        Set<Long> ids = new HashSet<>();
+        List<Long> duplicates = new ArrayList<>();
+        for (int round = 0; round < 10; round++) {
+            // Uneven runs so each side crosses block boundaries while the other holds a partial block
+            for (int i = 0; i < 37; i++) {
+                long id = allocator.nextId();
+                if (!ids.add(id)) {
+                    duplicates.add(id);
+                }
+            }
+            for (int i = 0; i < 23; i++) {
+                long id = hibernateId();
+                if (!ids.add(id)) {
+                    duplicates.add(id);
+                }
+            }
+        }
+
+        assertThat(duplicates).isEmpty();
+        assertThat(ids).allMatch(id -> id > 50 && id <= sequence.get());
+    }
+
+    @Test
+    void rejectsTheSequenceStartValue() {
+        // A fresh messages_seq that pooled-id-sequences.sql has not moved yet returns its START WITH 1
+        sequence.set(1 - BLOCK);
+
+        assertThatThrownBy(allocator::nextId).isInstanceOf(IllegalStateException.class);
+    }
+
+    private long hibernateId() {
+        return ((Number) hibernate.generate(new AccessCallback() {
+            @Override
+            public IntegralDataTypeHolder getNextValue() {
+                IntegralDataTypeHolder value = IdentifierGeneratorHelper.getIntegralDataTypeHolder(Long.class);
+                value.initialize(sequence.addAndGet(BLOCK));
+                return value;
+            }
+
+            @Override
+            public String getTenantIdentifier() {
+                return null;
+            }
+        })).longValue();
+    }
+}
@@ -0,0 +1,139 @@
+package com.viola.server_side.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/** Two in-process nodes sharing one PostgreSQL database, each with its own local broker channel. */
+@Testcontainers(disabledWithoutDocker = true)
+class PostgresClusterFanoutTests {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private Node nodeA;
+    private Node nodeB;
+
+    @BeforeEach
+    void startNodes() {
+        nodeA = new Node();
+        nodeB = new Node();
+    }
+
+    @AfterEach
+    void stopNodes() throws InterruptedException {
+        nodeA.fanout.stop();
+        nodeB.fanout.stop();
+    }
+
+    @Test
+    void topicBroadcastReachesOtherNode() {
+        nodeA.messaging.convertAndSend("/topic/ride.42", Map.of("content", "hello", "rideId", 42));
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> !nodeB.delivered.isEmpty());
+        Message<?> relayed = nodeB.delivered.get(0);
+        assertThat(SimpMessageHeaderAccessor.getDestination(relayed.getHeaders())).isEqualTo("/topic/ride.42");
+        assertThat(new String((byte[]) relayed.getPayload())).contains("\"content\":\"hello\"");
+        // The publisher delivers locally once and ignores its own notification
+        assertThat(nodeA.delivered).hasSize(1);
+    }
+
+    @Test
+    void userDestinationReachesOtherNode() {
+        nodeA.sessions.register("session-1", "7", null);
+        nodeB.messaging.convertAndSendToUser("7", "/queue/unread", Map.of("type", "unread_count", "count", 3));
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> !nodeA.delivered.isEmpty());
+        assertThat(SimpMessageHeaderAccessor.getDestination(nodeA.delivered.get(0).getHeaders()))
+                .isEqualTo("/user/7/queue/unread");
+        // User 7 has no session on the publishing node, so nothing was delivered there
+        assertThat(nodeB.delivered).isEmpty();
+    }
+
+    @Test
+    void payloadAboveNotifyLimitIsRelayedThroughTable() {
+        String content = "x".repeat(20_000);
+        nodeA.messaging.convertAndSend("/topic/ride.1", Map.of("content", content));
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> !nodeB.delivered.isEmpty());
+        assertThat(new String((byte[]) nodeB.delivered.get(0).getPayload())).contains(content);
+    }
+
+    @Test
+    void relayedEventReachesOtherNodeListeners() {
+        nodeA.events.publish(new RideDeletedEvent(42L));
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> !nodeB.published.isEmpty());
+        assertThat(nodeB.published).containsExactly(new RideDeletedEvent(42L));
+        assertThat(nodeA.published).containsExactly(new RideDeletedEvent(42L));
+        // Events are not replayed into the STOMP broker
+        assertThat(nodeB.delivered).isEmpty();
+    }
+
+    @Test
+    void rideETagsAreSharedAcrossNodes() {
+        String before = nodeB.versions.allRidesETag();
+        assertThat(nodeA.versions.allRidesETag()).isEqualTo(before);
+
+        nodeA.versions.bump();
+
+        assertThat(nodeB.versions.allRidesETag()).isNotEqualTo(before).isEqualTo(nodeA.versions.allRidesETag());
+    }
+
+    private class Node {
+
+        final List<Message<?>> delivered = new CopyOnWriteArrayList<>();
+        final List<Object> published = new CopyOnWriteArrayList<>();
+        final PostgresClusterFanout fanout;
+        final StompSessionRegistry sessions = new StompSessionRegistry(new SimpleMeterRegistry());
+        final ClusterMessagingService messaging;
+        final ClusterEventRelay events;
+        final RideVersionTracker versions;
+
+        Node() {
+            DataSourceProperties properties = new DataSourceProperties();
+            properties.setUrl(POSTGRES.getJdbcUrl());
+            properties.setUsername(POSTGRES.getUsername());
+            properties.setPassword(POSTGRES.getPassword());
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                    POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword()));
+
+            SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> delivered.add(message));
+            template.setMessageConverter(new MappingJackson2MessageConverter(objectMapper));
+
+            fanout = new PostgresClusterFanout(properties, jdbcTemplate, objectMapper, new SimpleMeterRegistry(),
+                    "viola_fanout_test", 300);
+            messaging = new ClusterMessagingService(template, fanout, objectMapper, sessions);
+            messaging.subscribe();
+            events = new ClusterEventRelay(published::add, fanout, objectMapper);
+            events.subscribe();
+            jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS ride_version_seq");
+            versions = new RideVersionTracker(jdbcTemplate, "postgres");
+            fanout.start();
+            // LISTEN is issued asynchronously by the listener thread
+            await().atMost(Duration.ofSeconds(10)).until(fanout::isListening);
+        }
+    }
+}
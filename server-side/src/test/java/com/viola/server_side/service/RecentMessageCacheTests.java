@@ -0,0 +1,165 @@
+package com.viola.server_side.service;
+
+import com.viola.server_side.dto.MessageDto;
+import com.viola.server_side.dto.MessagePageDto;
+import com.viola.server_side.dto.UserDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RecentMessageCacheTests {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 12, 0);
+    private static final long ALICE = 1L;
+    private static final long BOB = 2L;
+
+    @Test
+    void pagesWalkBackFromTheCursor() {
+        RecentMessageCache cache = cache(10, Long.MAX_VALUE, "local");
+        List<MessageDto> seed = newestFirst(42L, 1, 5);
+
+        MessagePageDto newest = cache.findPage(42L, ALICE, null, 2, () -> seed).orElseThrow();
+        assertThat(ids(newest)).containsExactly(4L, 5L);
+        assertThat(newest.getHasMore()).isTrue();
+        assertThat(newest.getNextBefore()).isEqualTo(4L);
+
+        MessagePageDto middle = page(cache, 42L, 4L, 2).orElseThrow();
+        assertThat(ids(middle)).containsExactly(2L, 3L);
+        assertThat(middle.getHasMore()).isTrue();
+
+        MessagePageDto oldest = page(cache, 42L, 2L, 2).orElseThrow();
+        assertThat(ids(oldest)).containsExactly(1L);
+        assertThat(oldest.getHasMore()).isFalse();
+        assertThat(oldest.getNextBefore()).isNull();
+    }
+
+    @Test
+    void partialHistoryOnlyServesPagesItProvablyHolds() {
+        RecentMessageCache cache = cache(3, Long.MAX_VALUE, "local");
+        // A full seed may have older rows in the database
+        cache.findPage(42L, ALICE, null, 1, () -> newestFirst(42L, 8, 10));
+
+        assertThat(page(cache, 42L, null, 2)).map(RecentMessageCacheTests::ids).contains(List.of(9L, 10L));
+        assertThat(page(cache, 42L, null, 3)).isEmpty();
+        assertThat(page(cache, 42L, 9L, 1)).isEmpty();
+        assertThat(page(cache, 42L, 7L, 1)).as("cursor outside the buffer").isEmpty();
+    }
+
+    @Test
+    void appendDuringSeedIsMerged() {
+        RecentMessageCache cache = cache(10, Long.MAX_VALUE, "local");
+        List<MessageDto> seed = newestFirst(42L, 1, 3);
+        Supplier<List<MessageDto>> racingSeed = () -> {
+            // Committed after the seed query read the table
+            cache.append(reference(message(42L, 4)));
+            return seed;
+        };
+
+        assertThat(cache.findPage(42L, ALICE, null, 10, racingSeed)).map(RecentMessageCacheTests::ids)
+                .contains(List.of(1L, 2L, 3L, 4L));
+
+        cache.append(reference(message(42L, 4)));
+        cache.append(reference(message(42L, 5)));
+        assertThat(page(cache, 42L, null, 10)).map(RecentMessageCacheTests::ids)
+                .contains(List.of(1L, 2L, 3L, 4L, 5L));
+    }
+
+    @Test
+    void appendFromAnUnknownParticipantDropsTheBuffer() {
+        RecentMessageCache cache = cache(10, Long.MAX_VALUE, "local");
+        cache.findPage(42L, ALICE, null, 10, () -> newestFirst(42L, 1, 3));
+
+        MessageDto stranger = reference(message(42L, 4));
+        stranger.getSender().setId(99L);
+        cache.append(stranger);
+
+        assertThat(cache.rideCount()).isZero();
+        assertThat(cache.estimatedBytes()).isZero();
+    }
+
+    @Test
+    void byteCapEvictsTheLeastRecentlyUsedRide() {
+        RecentMessageCache probe = cache(10, Long.MAX_VALUE, "local");
+        probe.findPage(1L, ALICE, null, 10, () -> newestFirst(1L, 1, 5));
+        long oneRide = probe.estimatedBytes();
+
+        RecentMessageCache cache = cache(10, oneRide * 2 + oneRide / 2, "local");
+        cache.findPage(1L, ALICE, null, 10, () -> newestFirst(1L, 1, 5));
+        cache.findPage(2L, ALICE, null, 10, () -> newestFirst(2L, 11, 15));
+        page(cache, 1L, null, 10);
+        cache.findPage(3L, ALICE, null, 10, () -> newestFirst(3L, 21, 25));
+
+        assertThat(cache.rideCount()).isEqualTo(2);
+        assertThat(cache.estimatedBytes()).isEqualTo(oneRide * 2);
+        assertThat(page(cache, 1L, null, 10)).isPresent();
+        assertThatThrownBy(() -> page(cache, 2L, null, 10)).hasMessage("not buffered");
+    }
+
+    @Test
+    void disabledWithoutLocalFanout() {
+        RecentMessageCache cache = cache(10, Long.MAX_VALUE, "postgres");
+
+        assertThat(cache.findPage(42L, ALICE, null, 10, () -> {
+            throw new AssertionError("seeded a disabled cache");
+        })).isEmpty();
+        cache.append(reference(message(42L, 1)));
+        assertThat(cache.rideCount()).isZero();
+    }
+
+    private static RecentMessageCache cache(int messagesPerRide, long maxBytes, String fanout) {
+        return new RecentMessageCache(messagesPerRide, 100, maxBytes, Duration.ofMinutes(30), fanout,
+                new SimpleMeterRegistry());
+    }
+
+    /** Reads a page from an existing buffer; an unbuffered ride fails instead of seeding. */
+    private static Optional<MessagePageDto> page(RecentMessageCache cache, Long rideId, Long beforeId, int pageSize) {
+        return cache.findPage(rideId, ALICE, beforeId, pageSize, () -> {
+            throw new IllegalStateException("not buffered");
+        });
+    }
+
+    private static List<MessageDto> newestFirst(Long rideId, long firstId, long lastId) {
+        List<MessageDto> messages = new ArrayList<>();
+        for (long id = lastId; id >= firstId; id--) {
+            messages.add(message(rideId, id));
+        }
+        return messages;
+    }
+
+    private static MessageDto message(Long rideId, long id) {
+        boolean fromAlice = id % 2 == 1;
+        return new MessageDto(id, String.format("message %03d", id), user(fromAlice ? ALICE : BOB), user(fromAlice ? BOB : ALICE),
+                rideId, false, START.plusSeconds(id));
+    }
+
+    /** The send path's copy, carrying user ids only. */
+    private static MessageDto reference(MessageDto message) {
+        UserDto sender = new UserDto();
+        sender.setId(message.getSender().getId());
+        UserDto receiver = new UserDto();
+        receiver.setId(message.getReceiver().getId());
+        return new MessageDto(message.getId(), message.getContent(), sender, receiver,
+                message.getRideId(), message.getIsRead(), message.getCreatedAt());
+    }
+
+    private static UserDto user(long id) {
+        UserDto user = new UserDto();
+        user.setId(id);
+        user.setName("user " + id);
+        user.setEmail("user" + id + "@example.com");
+        return user;
+    }
+
+    private static List<Long> ids(MessagePageDto page) {
+        return page.getMessages().stream().map(MessageDto::getId).toList();
+    }
+}
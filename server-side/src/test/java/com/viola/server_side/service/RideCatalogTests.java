@@ -0,0 +1,75 @@
+package com.viola.server_side.service;
+
+import com.viola.server_side.dto.RideDto;
+import com.viola.server_side.dto.UserDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RideCatalogTests {
+
+    private final RideCatalog catalog = new RideCatalog(100, 0.01, new SimpleMeterRegistry());
+
+    @Test
+    void rebuildKeepsChangesMadeWhileLoading() {
+        catalog.rebuild(() -> List.of(ride(1, 7), ride(2, 7)));
+
+        catalog.rebuild(() -> {
+            // Lands after the snapshot query, before the new indexes are swapped in
+            catalog.put(ride(3, 7));
+            catalog.remove(2L);
+            assertThat(catalog.findAllActive()).hasValueSatisfying(rides -> assertThat(rides).hasSize(2));
+            return List.of(ride(1, 7), ride(2, 7));
+        });
+
+        assertThat(catalog.findAllActive()).hasValueSatisfying(rides ->
+                assertThat(rides).extracting(RideDto::getId).containsExactly(3L, 1L));
+    }
+
+    @Test
+    void updateOwnerReplacesCachedRides() {
+        RideDto cached = ride(1, 7);
+        catalog.rebuild(() -> List.of(cached, ride(2, 8)));
+        UserDto renamed = new UserDto(7L, "owner7@example.com", "Renamed", null, true, null);
+
+        assertThat(catalog.updateOwner(renamed)).extracting(RideDto::getOwner).containsExactly(renamed);
+
+        assertThat(cached.getOwner().getName()).isEqualTo("Owner 7");
+        assertThat(catalog.findById(1L)).hasValueSatisfying(ride -> assertThat(ride.getOwner()).isEqualTo(renamed));
+        assertThat(catalog.findById(2L)).hasValueSatisfying(ride -> assertThat(ride.getOwner().getName()).isEqualTo("Owner 8"));
+        assertThat(catalog.findAllActive()).hasValueSatisfying(rides ->
+                assertThat(rides).extracting(ride -> ride.getOwner().getName()).containsExactly("Owner 8", "Renamed"));
+    }
+
+    @Test
+    void staysOverflowedUntilASnapshotFits() {
+        RideCatalog small = new RideCatalog(2, 0.01, new SimpleMeterRegistry());
+        small.rebuild(() -> List.of(ride(2, 7), ride(1, 7)));
+
+        small.put(ride(3, 7));
+        // Ride 1 was evicted; deactivating another ride does not bring it back
+        small.remove(2L);
+        assertThat(small.isOverflowed()).isTrue();
+        assertThat(small.findAllActive()).isEmpty();
+
+        small.rebuild(() -> List.of(ride(3, 7), ride(1, 7)));
+        assertThat(small.isOverflowed()).isFalse();
+        assertThat(small.findAllActive()).hasValueSatisfying(rides ->
+                assertThat(rides).extracting(RideDto::getId).containsExactly(3L, 1L));
+    }
+
+    private static RideDto ride(long id, long ownerId) {
+        RideDto ride = new RideDto();
+        ride.setId(id);
+        ride.setPickup("Katpadi");
+        ride.setDestination("Chennai");
+        ride.setOwner(new UserDto(ownerId, "owner" + ownerId + "@example.com", "Owner " + ownerId, null, true, null));
+        ride.setIsActive(true);
+        ride.setCreatedAt(LocalDateTime.of(2026, 1, 1, 0, 0).plusMinutes(id));
+        return ride;
+    }
+}
@@ -0,0 +1,92 @@
+package com.viola.server_side.service;
+
+import com.viola.server_side.entity.GenderPreference;
+import com.viola.server_side.entity.Ride;
+import com.viola.server_side.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({RideService.class, UserService.class, RideVersionTracker.class})
+class RideServiceQueryCountTests {
+
+    // An unmocked catalog would answer reads from memory; the default mock always misses so the DB path is measured
+    @MockitoBean
+    private RideCatalog rideCatalog;
+
+    @MockitoBean
+    private RideFeedPublisher rideFeedPublisher;
+
+    @MockitoBean
+    private ClusterEventRelay clusterEventRelay;
+
+    @Autowired
+    private RideService rideService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long ownerId;
+    private Long rideId;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 5; i++) {
+            User owner = new User("owner" + i + "@vitstudent.ac.in", "Owner " + i, null, "google-" + i);
+            entityManager.persist(owner);
+            for (int j = 0; j < 3; j++) {
+                Ride ride = new Ride("Main Gate", "Katpadi", "2026-01-01", "10:00", "100",
+                        true, null, GenderPreference.ANYONE, owner);
+                entityManager.persist(ride);
+                rideId = ride.getId();
+            }
+            ownerId = owner.getId();
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void activeRideListingUsesSingleStatement() {
+        assertThat(rideService.getAllActiveRides()).hasSize(15);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void activeRideFeedUsesSingleStatement() {
+        assertThat(rideService.getActiveRideFeed(null, 10, null, null, null).getRides()).hasSize(10);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void ownerRideListingUsesSingleStatement() {
+        assertThat(rideService.getRidesByOwner(ownerId)).hasSize(3);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void rideLookupUsesSingleStatement() {
+        assertThat(rideService.getRideById(rideId).getOwner()).isNotNull();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
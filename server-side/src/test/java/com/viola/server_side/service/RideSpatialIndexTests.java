@@ -0,0 +1,67 @@
+package com.viola.server_side.service;
+
+import com.viola.server_side.dto.NearbyRideDto;
+import com.viola.server_side.dto.RideDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class RideSpatialIndexTests {
+
+    private final RideSpatialIndex index = new RideSpatialIndex(0.01);
+
+    @Test
+    void rejectsCoordinatesOutsideTheGlobe() {
+        assertThatThrownBy(() -> nearest(0, 1e10, 50)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> nearest(91, 0, 50)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> nearest(Double.NaN, 0, 50)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> nearest(0, Double.POSITIVE_INFINITY, 50)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void wideQueriesFallBackToOccupiedCells() {
+        index.add(ride(1, 89.9, 10.0));
+        index.add(ride(2, 12.97, 79.16));
+
+        List<NearbyRideDto> polar = assertTimeoutPreemptively(Duration.ofSeconds(1), () -> nearest(89.99, 0, 50));
+        assertThat(polar).extracting(match -> match.getRide().getId()).containsExactly(1L);
+        assertThat(assertTimeoutPreemptively(Duration.ofSeconds(1), () -> new RideSpatialIndex(0.01).findNearest(
+                12.97, 79.16, null, null, null, null, 10, 50))).isEmpty();
+    }
+
+    @Test
+    void matchesFullScanAcrossRadii() {
+        Random random = new Random(7);
+        List<RideDto> rides = new ArrayList<>();
+        for (long id = 1; id <= 500; id++) {
+            RideDto ride = ride(id, 12.9 + random.nextDouble() * 0.3, 79.0 + random.nextDouble() * 0.3);
+            rides.add(ride);
+            index.add(ride);
+        }
+        for (double radius : new double[]{0.5, 2, 10, 50}) {
+            List<NearbyRideDto> expected = RideSpatialIndex.rankNearest(rides, 13.0, 79.1, null, null, null, null, 20, radius);
+            assertThat(nearest(13.0, 79.1, radius)).extracting(match -> match.getRide().getId())
+                    .containsExactlyElementsOf(expected.stream().map(match -> match.getRide().getId()).toList());
+        }
+    }
+
+    private List<NearbyRideDto> nearest(double lat, double lng, double radiusKm) {
+        return index.findNearest(lat, lng, null, null, null, null, 20, radiusKm);
+    }
+
+    private static RideDto ride(long id, double lat, double lng) {
+        RideDto ride = new RideDto();
+        ride.setId(id);
+        ride.setIsActive(true);
+        ride.setPickupLat(lat);
+        ride.setPickupLng(lng);
+        return ride;
+    }
+}
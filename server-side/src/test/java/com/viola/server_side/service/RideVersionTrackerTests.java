@@ -0,0 +1,56 @@
+package com.viola.server_side.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class RideVersionTrackerTests {
+
+    private final RideVersionTracker tracker = new RideVersionTracker(mock(JdbcTemplate.class), "local");
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void bumpChangesTheETag() {
+        String before = tracker.rideETag(1L);
+
+        tracker.bump();
+
+        assertThat(tracker.rideETag(1L)).isNotEqualTo(before);
+    }
+
+    @Test
+    void bumpInsideTransactionWaitsForCommit() {
+        String before = tracker.allRidesETag();
+        TransactionSynchronizationManager.initSynchronization();
+
+        tracker.bump();
+        assertThat(tracker.allRidesETag()).isEqualTo(before);
+
+        TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+        assertThat(tracker.allRidesETag()).isNotEqualTo(before);
+    }
+
+    @Test
+    void rolledBackBumpKeepsTheETag() {
+        String before = tracker.allRidesETag();
+        TransactionSynchronizationManager.initSynchronization();
+
+        tracker.bump();
+        TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(),
+                TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(tracker.allRidesETag()).isEqualTo(before);
+    }
+}
@@ -0,0 +1,41 @@
+package com.viola.server_side.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StompSessionRegistryTests {
+
+    private final StompSessionRegistry registry = new StompSessionRegistry(new SimpleMeterRegistry());
+
+    @Test
+    void indexesSessionsByRideTopic() {
+        registry.register("s1", "7", null);
+        registry.register("s2", "8", null);
+        registry.subscribe("s1", "sub-1", "/topic/ride.42");
+        registry.subscribe("s1", "sub-2", "/topic/ride.42");
+        registry.subscribe("s2", "sub-1", "/topic/ride.42");
+        registry.subscribe("s2", "sub-2", "/user/queue/private");
+
+        assertThat(registry.sessionsOfRide(42L)).containsExactlyInAnyOrder("s1", "s2");
+
+        // s1 still holds a second subscription to the same topic
+        registry.unsubscribe("s1", "sub-1");
+        assertThat(registry.sessionsOfRide(42L)).containsExactlyInAnyOrder("s1", "s2");
+        registry.unsubscribe("s1", "sub-2");
+        assertThat(registry.sessionsOfRide(42L)).containsExactly("s2");
+
+        registry.remove("s2");
+        assertThat(registry.sessionsOfRide(42L)).isEmpty();
+        assertThat(registry.hasSessions("8")).isFalse();
+    }
+
+    @Test
+    void parsesOnlyRideTopics() {
+        assertThat(StompSessionRegistry.parseRideTopic("/topic/ride.42")).isEqualTo(42L);
+        assertThat(StompSessionRegistry.parseRideTopic("/topic/ride.abc")).isNull();
+        assertThat(StompSessionRegistry.parseRideTopic("/topic/rides")).isNull();
+        assertThat(StompSessionRegistry.parseRideTopic(null)).isNull();
+    }
+}
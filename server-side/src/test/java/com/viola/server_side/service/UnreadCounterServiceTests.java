@@ -0,0 +1,99 @@
+package com.viola.server_side.service;
+
+import com.viola.server_side.repository.ConversationSummaryRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UnreadCounterServiceTests {
+
+    private final ConversationSummaryRepository summaries = mock(ConversationSummaryRepository.class);
+    private final ClusterMessagingService messaging = mock(ClusterMessagingService.class);
+    private final UnreadCounterService counters = new UnreadCounterService(summaries, messaging, 100, "local");
+
+    @Test
+    void missAfterCommitCountsTheMessageOnce() {
+        // GROUP_COMMIT: the summary already holds the message when the counter first sees the receiver
+        when(summaries.countUnreadByRide(7L)).thenReturn(rows(new Object[]{42L, 1L}));
+
+        counters.onMessageSent(7L, 42L);
+
+        assertThat(counters.getTotalUnread(7L)).isEqualTo(1);
+        assertThat(lastPush(7L)).containsEntry("rideCount", 1).containsEntry("count", 1);
+    }
+
+    @Test
+    void preloadedCountsAreIncremented() {
+        when(summaries.countUnreadByRide(7L)).thenReturn(rows(new Object[]{42L, 2L}));
+
+        counters.preload(7L);
+        counters.onMessageSent(7L, 42L);
+        counters.onMessageSent(7L, 43L);
+
+        assertThat(counters.getTotalUnread(7L)).isEqualTo(4);
+        verify(summaries, times(1)).countUnreadByRide(7L);
+    }
+
+    @Test
+    void readResetsTheRideAndPushesTheRemainder() {
+        when(summaries.countUnreadByRide(7L)).thenReturn(rows(new Object[]{42L, 3L}, new Object[]{43L, 1L}));
+
+        counters.onRideRead(7L, 42L);
+
+        assertThat(counters.getTotalUnread(7L)).isEqualTo(1);
+        assertThat(lastPush(7L)).containsEntry("rideId", 42L).containsEntry("rideCount", 0).containsEntry("count", 1);
+    }
+
+    @Test
+    void evictionKeepsOtherUsersCounts() {
+        UnreadCounterService small = new UnreadCounterService(summaries, messaging, 1, "local");
+        when(summaries.countUnreadByRide(any())).thenReturn(List.of());
+
+        small.preload(7L);
+        small.preload(8L);
+        small.onMessageSent(8L, 42L);
+
+        assertThat(small.getTotalUnread(8L)).isEqualTo(1);
+    }
+
+    @Test
+    void clusteredCountsAreReadFromTheSummaryEveryTime() {
+        UnreadCounterService clustered = new UnreadCounterService(summaries, messaging, 100, "postgres");
+        // Another node's sends land in the summary between the two reads
+        when(summaries.countUnreadByRide(7L))
+                .thenReturn(rows(new Object[]{42L, 1L}))
+                .thenReturn(rows(new Object[]{42L, 3L}))
+                .thenReturn(rows());
+
+        assertThat(clustered.getTotalUnread(7L)).isEqualTo(1);
+        assertThat(clustered.getTotalUnread(7L)).isEqualTo(3);
+
+        clustered.onRideRead(7L, 42L);
+        assertThat(lastPush(7L)).containsEntry("rideCount", 0).containsEntry("count", 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> lastPush(Long userId) {
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(messaging, atLeastOnce())
+                .convertAndSendToUser(eq(userId.toString()), eq("/queue/unread"), payload.capture(), anyString());
+        return (Map<String, Object>) payload.getValue();
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+}